@@ -0,0 +1,148 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Deterministic stand-ins for embedded documents: vectors are drawn around a few hundred centroids, like topical
+// clusters in a real corpus, and chunk texts are sentences over a small vocabulary.
+final class SyntheticCorpus {
+
+	private static final int CLUSTERS = 256;
+	private static final int SOURCES = 512;
+	private static final double CLUSTER_SPREAD = 0.35d;
+	private static final String[] WORDS = { "retrieval", "vector", "index", "query", "document", "answer", "model",
+			"latency", "cache", "segment", "score", "context", "search", "embedding", "evaluator", "refinement",
+			"corpus", "snapshot", "throughput", "benchmark", "the", "a", "of", "and", "with", "for", "is", "in" };
+
+	private final SplittableRandom random;
+	private final int dimension;
+	private final double[][] centroids;
+
+	SyntheticCorpus(long seed, int dimension) {
+		this.random = new SplittableRandom(seed);
+		this.dimension = dimension;
+		this.centroids = new double[CLUSTERS][];
+		for (int i = 0; i < CLUSTERS; i++) {
+			centroids[i] = gaussian();
+		}
+	}
+
+	private SyntheticCorpus(SplittableRandom random, int dimension, double[][] centroids) {
+		this.random = random;
+		this.dimension = dimension;
+		this.centroids = centroids;
+	}
+
+	// Queries come from the same clusters as the stored vectors but never coincide with them.
+	SyntheticCorpus queries() {
+		return new SyntheticCorpus(random.split(), dimension, centroids);
+	}
+
+	List<Double> vector() {
+		double[] centroid = centroids[random.nextInt(CLUSTERS)];
+		List<Double> vector = new ArrayList<>(dimension);
+		for (int i = 0; i < dimension; i++) {
+			vector.add(centroid[i] + CLUSTER_SPREAD * nextGaussian());
+		}
+		return vector;
+	}
+
+	List<List<Double>> vectors(int count) {
+		List<List<Double>> vectors = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			vectors.add(vector());
+		}
+		return vectors;
+	}
+
+	Map<String, String> metadata(int id) {
+		Map<String, String> metadata = new HashMap<>();
+		metadata.put(VectorStore.CHUNK_ID, "chunk-" + id);
+		metadata.put(VectorStore.SOURCE_PATH, "documents/source-" + (id % SOURCES) + ".txt");
+		metadata.put(VectorStore.TEXT, sentences(3));
+		return metadata;
+	}
+
+	String text(int length) {
+		StringBuilder text = new StringBuilder(length + 128);
+		while (text.length() < length) {
+			text.append(sentences(1)).append(random.nextInt(8) == 0 ? "\n\n" : " ");
+		}
+		text.setLength(length);
+		return text.toString();
+	}
+
+	String sentences(int count) {
+		StringBuilder text = new StringBuilder();
+		for (int sentence = 0; sentence < count; sentence++) {
+			if (sentence > 0) {
+				text.append(' ');
+			}
+			int words = 6 + random.nextInt(14);
+			for (int word = 0; word < words; word++) {
+				String next = WORDS[random.nextInt(WORDS.length)];
+				if (word == 0) {
+					text.append(Character.toUpperCase(next.charAt(0))).append(next, 1, next.length());
+				}
+				else {
+					text.append(' ').append(next);
+				}
+			}
+			text.append(switch (random.nextInt(6)) {
+				case 0 -> '?';
+				case 1 -> '!';
+				default -> '.';
+			});
+		}
+		return text.toString();
+	}
+
+	static VectorStore store(String type) {
+		IngestionProperties properties = new IngestionProperties();
+		return switch (type) {
+			case "in-memory" -> new InMemoryVectorStore(properties);
+			case "flat" -> new FlatVectorStore(properties);
+			case "flat-int8" -> {
+				properties.getStore().getQuantization().setEnabled(true);
+				yield new FlatVectorStore(properties);
+			}
+			case "hnsw" -> new HnswVectorStore(properties);
+			default -> throw new IllegalArgumentException("Unknown vector store type: " + type);
+		};
+	}
+
+	VectorStore populate(String type, int vectors) {
+		VectorStore store = store(type);
+		int batchSize = 1024;
+		for (int from = 0; from < vectors; from += batchSize) {
+			int to = Math.min(vectors, from + batchSize);
+			List<List<Double>> batch = new ArrayList<>(to - from);
+			List<Map<String, String>> metadata = new ArrayList<>(to - from);
+			for (int id = from; id < to; id++) {
+				batch.add(vector());
+				metadata.add(metadata(id));
+			}
+			store.addAll(batch, metadata);
+		}
+		return store;
+	}
+
+	private double[] gaussian() {
+		double[] values = new double[dimension];
+		for (int i = 0; i < dimension; i++) {
+			values[i] = nextGaussian();
+		}
+		return values;
+	}
+
+	// SplittableRandom has no nextGaussian on Java 17, so use Box-Muller.
+	private double nextGaussian() {
+		double u = 1.0d - random.nextDouble();
+		double v = random.nextDouble();
+		return Math.sqrt(-2.0d * Math.log(u)) * Math.cos(2.0d * Math.PI * v);
+	}
+
+}
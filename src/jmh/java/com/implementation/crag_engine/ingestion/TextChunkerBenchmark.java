@@ -0,0 +1,57 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextChunkerBenchmark {
+
+	@Param({ "10000", "1000000" })
+	private int length;
+
+	@Param({ "500" })
+	private int chunkSize;
+
+	@Param({ "100" })
+	private int overlap;
+
+	private final TextChunker chunker = new TextChunker();
+	private String text;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		text = new SyntheticCorpus(42L, 1).text(length);
+	}
+
+	@Benchmark
+	public List<String> chunkString() {
+		return chunker.chunk(text, chunkSize, overlap);
+	}
+
+	@Benchmark
+	public int chunkReader(Blackhole blackhole) throws IOException {
+		return chunker.chunk(new StringReader(text), chunkSize, overlap, blackhole::consume);
+	}
+
+}
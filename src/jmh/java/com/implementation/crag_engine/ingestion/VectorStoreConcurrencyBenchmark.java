@@ -0,0 +1,87 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Searches racing re-ingestion: readers query while a writer upserts existing chunk ids, so the store keeps its size
+// and every write supersedes an entry the readers may be scoring.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorStoreConcurrencyBenchmark {
+
+	private static final int SAMPLES = 1024;
+
+	@Param({ "in-memory", "flat", "flat-int8", "hnsw" })
+	private String store;
+
+	@Param({ "10000", "100000" })
+	private int vectors;
+
+	@Param({ "384" })
+	private int dimension;
+
+	@Param({ "10" })
+	private int topK;
+
+	private VectorStore vectorStore;
+	private List<List<Double>> queries;
+	private List<List<Double>> replacements;
+	private SyntheticCorpus corpus;
+
+	@Setup(Level.Trial)
+	public void populate() {
+		corpus = new SyntheticCorpus(42L, dimension);
+		vectorStore = corpus.populate(store, vectors);
+		queries = corpus.queries().vectors(SAMPLES);
+		replacements = corpus.queries().vectors(SAMPLES);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(3)
+	public List<VectorStore.SearchResult> search(Cursor cursor) {
+		return vectorStore.search(queries.get(cursor.next()), topK);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public int upsert(Cursor cursor) {
+		int sample = cursor.next();
+		Map<String, String> metadata = corpus.metadata((sample * 7919) % vectors);
+		vectorStore.upsertAll(List.of(replacements.get(sample)), List.of(metadata));
+		return vectorStore.size();
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		private int position;
+
+		int next() {
+			return position++ & (SAMPLES - 1);
+		}
+
+	}
+
+}
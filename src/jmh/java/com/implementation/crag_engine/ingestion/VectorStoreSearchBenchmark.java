@@ -0,0 +1,66 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Single-threaded top-k search over a store that is populated once per trial. The 1M-vector corpora need a heap of
+// several GB (-jvmArgsAppend -Xmx8g); HNSW takes a long time to build them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorStoreSearchBenchmark {
+
+	private static final int QUERIES = 1024;
+
+	@Param({ "in-memory", "flat", "flat-int8", "hnsw" })
+	private String store;
+
+	@Param({ "10000", "100000", "1000000" })
+	private int vectors;
+
+	@Param({ "384", "768", "1024" })
+	private int dimension;
+
+	@Param({ "5", "10", "50" })
+	private int topK;
+
+	private VectorStore vectorStore;
+	private List<List<Double>> queries;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void populate() {
+		SyntheticCorpus corpus = new SyntheticCorpus(42L, dimension);
+		vectorStore = corpus.populate(store, vectors);
+		queries = corpus.queries().vectors(QUERIES);
+	}
+
+	@Benchmark
+	public List<VectorStore.SearchResult> search() {
+		List<Double> query = queries.get(next++ & (QUERIES - 1));
+		return vectorStore.search(query, topK);
+	}
+
+	@Benchmark
+	public List<VectorStore.SearchResult> searchFiltered() {
+		List<Double> query = queries.get(next++ & (QUERIES - 1));
+		return vectorStore.search(query, topK, MetadataFilter.prefix(VectorStore.SOURCE_PATH, "documents/source-1"));
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The string work around each LLM call: splitting chunks into strips for refinement and parsing evaluator scores.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+	private static final String[] SENTENCES = { "Retrieval quality drives the answer.",
+			"Is the evaluator calibrated for this model?", "Scores above the upper threshold skip refinement!",
+			"Ambiguous hits are refined and combined with web results." };
+
+	@Param({ "500", "4000" })
+	private int chunkLength;
+
+	@Param({ "5", "20" })
+	private int batchSize;
+
+	private String chunk;
+	private String scoreResponse;
+	private String indexedBatchResponse;
+	private String positionalBatchResponse;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; text.length() < chunkLength; i++) {
+			text.append(SENTENCES[i % SENTENCES.length]).append(i % 7 == 0 ? "\n" : " ");
+		}
+		chunk = text.toString();
+		scoreResponse = "The chunk directly answers the query.\nScore: 0.85";
+		StringBuilder indexed = new StringBuilder("Here are the scores:\n");
+		StringBuilder positional = new StringBuilder();
+		for (int i = 1; i <= batchSize; i++) {
+			String score = i % 3 == 0 ? "0.2" : "0.9";
+			indexed.append("Chunk ").append(i).append(": score = ").append(score).append('\n');
+			positional.append("score: ").append(score).append('\n');
+		}
+		indexedBatchResponse = indexed.toString();
+		positionalBatchResponse = positional.toString();
+	}
+
+	@Benchmark
+	public List<String> splitIntoStrips() {
+		return KnowledgeRefiner.splitIntoStrips(chunk);
+	}
+
+	@Benchmark
+	public double parseScore() {
+		return RetrievalEvaluator.parseScore(scoreResponse);
+	}
+
+	@Benchmark
+	public Double[] parseIndexedBatchScores() {
+		Double[] scores = new Double[batchSize];
+		RetrievalEvaluator.parseBatchScores(indexedBatchResponse, scores);
+		return scores;
+	}
+
+	@Benchmark
+	public Double[] parsePositionalBatchScores() {
+		Double[] scores = new Double[batchSize];
+		RetrievalEvaluator.parseBatchScores(positionalBatchResponse, scores);
+		return scores;
+	}
+
+}
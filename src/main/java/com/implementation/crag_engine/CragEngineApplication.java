@@ -8,11 +8,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 
+import com.implementation.crag_engine.client.OllamaClientProperties;
 import com.implementation.crag_engine.ingestion.DataIngestionService;
 import com.implementation.crag_engine.ingestion.IngestionProperties;
+import com.implementation.crag_engine.rag.RelevanceGateProperties;
+import com.implementation.crag_engine.stub.StubProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties(IngestionProperties.class)
+@EnableConfigurationProperties({ IngestionProperties.class, OllamaClientProperties.class, RelevanceGateProperties.class,
+		StubProperties.class })
 public class CragEngineApplication {
 
 	private static final Logger logger = LoggerFactory.getLogger(CragEngineApplication.class);
@@ -0,0 +1,32 @@
+package com.implementation.crag_engine.client;
+
+import java.util.function.BooleanSupplier;
+
+// Capacity a hedged call must claim before sending its duplicate, so hedging never exceeds the caller's concurrency
+// limit. A hedge is only sent when tryAcquire succeeds, and release is called once that request has finished.
+public interface HedgeBudget {
+
+	HedgeBudget UNLIMITED = of(() -> true, () -> {
+	});
+
+	boolean tryAcquire();
+
+	void release();
+
+	static HedgeBudget of(BooleanSupplier tryAcquire, Runnable release) {
+		return new HedgeBudget() {
+
+			@Override
+			public boolean tryAcquire() {
+				return tryAcquire.getAsBoolean();
+			}
+
+			@Override
+			public void release() {
+				release.run();
+			}
+
+		};
+	}
+
+}
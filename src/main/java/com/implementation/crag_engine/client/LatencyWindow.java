@@ -0,0 +1,38 @@
+package com.implementation.crag_engine.client;
+
+import java.util.Arrays;
+
+final class LatencyWindow {
+
+	private final long[] samples;
+	private int next;
+	private int count;
+
+	LatencyWindow(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Latency window capacity must be positive");
+		}
+		this.samples = new long[capacity];
+	}
+
+	synchronized void record(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		count = Math.min(count + 1, samples.length);
+	}
+
+	synchronized int count() {
+		return count;
+	}
+
+	synchronized long percentile(double quantile) {
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(quantile * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+}
@@ -0,0 +1,262 @@
+package com.implementation.crag_engine.client;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+@Component
+public class OllamaClients {
+
+	private static final Logger logger = LoggerFactory.getLogger(OllamaClients.class);
+
+	private final RestClient.Builder builder;
+	private final OllamaClientProperties properties;
+	private final MeterRegistry meterRegistry;
+	private final JdkClientHttpRequestFactory requestFactory;
+	private final ExecutorService hedgeExecutor;
+	private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+	public OllamaClients(RestClient.Builder builder, OllamaClientProperties properties, MeterRegistry meterRegistry) {
+		if (properties.getRetry().getMaxAttempts() <= 0) {
+			throw new IllegalArgumentException("ollama.retry.max-attempts must be positive");
+		}
+		if (properties.getHedge().getPercentile() <= 0.0d || properties.getHedge().getPercentile() >= 1.0d) {
+			throw new IllegalArgumentException("ollama.hedge.percentile must be in (0, 1)");
+		}
+		this.builder = builder;
+		this.properties = properties;
+		this.meterRegistry = meterRegistry;
+		// One shared JDK client keeps connections to Ollama alive across every service that talks to it.
+		HttpClient httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(properties.getConnectTimeout())
+			.build();
+		this.requestFactory = new JdkClientHttpRequestFactory(httpClient);
+		this.requestFactory.setReadTimeout(properties.getReadTimeout());
+		AtomicInteger threadIndex = new AtomicInteger();
+		this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "ollama-hedge-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public RestClient create(String baseUrl) {
+		return builder.clone().baseUrl(baseUrl).requestFactory(requestFactory).build();
+	}
+
+	public <T> T idempotent(String operationName, Supplier<T> call) {
+		return idempotent(operationName, call, HedgeBudget.UNLIMITED);
+	}
+
+	public <T> T idempotent(String operationName, Supplier<T> call, HedgeBudget hedgeBudget) {
+		Operation operation = operations.computeIfAbsent(operationName, this::newOperation);
+		int maxAttempts = properties.getRetry().getMaxAttempts();
+		for (int attempt = 1;; attempt++) {
+			try {
+				return properties.getHedge().isEnabled() ? hedged(operation, call, hedgeBudget)
+						: record(operation, timed(call));
+			}
+			catch (RuntimeException ex) {
+				if (attempt >= maxAttempts || !isTransient(ex)) {
+					throw ex;
+				}
+				long backoff = backoffNanos(attempt);
+				operation.retries.increment();
+				logger.warn("Retrying {} after attempt {} failed with {}; backing off {} ms", operationName, attempt,
+					ex.toString(), TimeUnit.NANOSECONDS.toMillis(backoff));
+				sleep(backoff);
+			}
+		}
+	}
+
+	private <T> T hedged(Operation operation, Supplier<T> call, HedgeBudget hedgeBudget) {
+		if (operation.latencies.count() < properties.getHedge().getMinSamples()) {
+			return record(operation, timed(call));
+		}
+		long delay = Math.max(properties.getHedge().getMinDelay().toNanos(),
+			operation.latencies.percentile(properties.getHedge().getPercentile()));
+		// Plain futures, not CompletableFuture: cancelling one interrupts its worker, which aborts the exchange.
+		CompletionService<Timed<T>> race = new ExecutorCompletionService<>(hedgeExecutor);
+		Future<Timed<T>> primary = race.submit(() -> timed(call));
+		Future<Timed<T>> hedge = null;
+		AtomicBoolean hedgeStarted = new AtomicBoolean();
+		AtomicBoolean hedgeReleased = new AtomicBoolean();
+		try {
+			Future<Timed<T>> done = race.poll(delay, TimeUnit.NANOSECONDS);
+			if (done == null) {
+				// Slower than the recent tail: race a duplicate against the original, if there is spare capacity.
+				if (hedgeBudget.tryAcquire()) {
+					hedge = race.submit(() -> {
+						hedgeStarted.set(true);
+						try {
+							return timed(call);
+						}
+						finally {
+							releaseOnce(hedgeBudget, hedgeReleased);
+						}
+					});
+				}
+				else {
+					operation.hedgesSkipped.increment();
+				}
+				done = race.take();
+			}
+			Timed<T> winner;
+			try {
+				winner = done.get();
+			}
+			catch (ExecutionException ex) {
+				if (hedge == null) {
+					throw unwrap(ex.getCause());
+				}
+				// Only fail once both requests have.
+				done = race.take();
+				winner = get(done);
+			}
+			if (hedge != null) {
+				(done == primary ? operation.primaryWins : operation.hedgeWins).increment();
+			}
+			return record(operation, winner);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for " + operation.name, ex);
+		}
+		finally {
+			primary.cancel(true);
+			if (hedge != null) {
+				hedge.cancel(true);
+				// A hedge cancelled before it ran never reaches its own release.
+				if (!hedgeStarted.get()) {
+					releaseOnce(hedgeBudget, hedgeReleased);
+				}
+			}
+		}
+	}
+
+	private static <T> Timed<T> timed(Supplier<T> call) {
+		long started = System.nanoTime();
+		T value = call.get();
+		return new Timed<>(value, System.nanoTime() - started);
+	}
+
+	// Only the answer the caller actually used is recorded, so an abandoned request cannot inflate the hedge delay.
+	private static <T> T record(Operation operation, Timed<T> result) {
+		operation.latencies.record(result.nanos());
+		operation.latency.record(result.nanos(), TimeUnit.NANOSECONDS);
+		return result.value();
+	}
+
+	private static <T> T get(Future<T> done) throws InterruptedException {
+		try {
+			return done.get();
+		}
+		catch (ExecutionException ex) {
+			throw unwrap(ex.getCause());
+		}
+	}
+
+	private static void releaseOnce(HedgeBudget hedgeBudget, AtomicBoolean released) {
+		if (released.compareAndSet(false, true)) {
+			hedgeBudget.release();
+		}
+	}
+
+	private long backoffNanos(int attempt) {
+		long initial = properties.getRetry().getInitialBackoff().toNanos();
+		long cap = properties.getRetry().getMaxBackoff().toNanos();
+		long ceiling = Math.min(cap, initial << Math.min(attempt - 1, 20));
+		// Full jitter keeps retries from many requests from lining up on a recovering server.
+		return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	private static boolean isTransient(Throwable ex) {
+		if (ex instanceof ResourceAccessException) {
+			return true;
+		}
+		if (ex instanceof HttpStatusCodeException statusException) {
+			return statusException.getStatusCode().is5xxServerError()
+					|| statusException.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+		}
+		return false;
+	}
+
+	private static RuntimeException unwrap(Throwable cause) {
+		if (cause instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		return new IllegalStateException(cause);
+	}
+
+	private static void sleep(long nanos) {
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while backing off before a retry", ex);
+		}
+	}
+
+	private Operation newOperation(String name) {
+		return new Operation(name, new LatencyWindow(properties.getHedge().getWindow()),
+			Timer.builder("crag.http.client.latency")
+				.tag("operation", name)
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry),
+			Counter.builder("crag.http.client.retries").tag("operation", name).register(meterRegistry),
+			hedgeCounter(name, "primary"), hedgeCounter(name, "hedge"),
+			Counter.builder("crag.http.client.hedges-skipped")
+				.description("Calls slow enough to hedge that found no spare capacity for the duplicate")
+				.tag("operation", name)
+				.register(meterRegistry));
+	}
+
+	private Counter hedgeCounter(String operation, String winner) {
+		return Counter.builder("crag.http.client.hedged")
+			.description("Hedged calls by which of the two requests answered first")
+			.tag("operation", operation)
+			.tag("winner", winner)
+			.register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		hedgeExecutor.shutdownNow();
+	}
+
+	private record Operation(String name, LatencyWindow latencies, Timer latency, Counter retries, Counter primaryWins,
+			Counter hedgeWins, Counter hedgesSkipped) {
+	}
+
+	private record Timed<T>(T value, long nanos) {
+	}
+
+}
@@ -0,0 +1,13 @@
+package com.implementation.crag_engine.ingestion;
+
+public interface ApproximateVectorStore extends VectorStore {
+
+	double estimateRecall(int sampleSize, int topK);
+
+	VectorFootprint footprint();
+
+	// Heap bytes cover vector data held on the heap, including quantized codes; mapped bytes live in the snapshot file.
+	record VectorFootprint(int embeddings, int dimension, long heapBytes, long mappedBytes) {
+	}
+
+}
@@ -0,0 +1,391 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+// Keyword index over the chunk texts in the vector store, scored with BM25. It holds only chunk ids, document lengths
+// and a term dictionary of int postings; callers resolve hits against the vector store. Incremental ingestion only
+// re-reads the sources that changed; a restore or full ingestion rebuilds the index in the background, and until
+// that build is swapped in searches see the previous index.
+@Component
+public class Bm25Index {
+
+	private static final Logger logger = LoggerFactory.getLogger(Bm25Index.class);
+	private static final int MIN_COMPACTION_SLOTS = 1024;
+
+	private final VectorStore vectorStore;
+	private final boolean enabled;
+	private final double k1;
+	private final double b;
+	private final ExecutorService builder;
+	// Serializes full builds with incremental updates, so neither overwrites the other's result.
+	private final Object updateLock = new Object();
+	private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+	public Bm25Index(VectorStore vectorStore, IngestionProperties properties) {
+		IngestionProperties.Lexical lexical = properties.getLexical();
+		if (lexical.getK1() < 0.0d) {
+			throw new IllegalArgumentException("ingestion.lexical.k1 must not be negative");
+		}
+		if (lexical.getB() < 0.0d || lexical.getB() > 1.0d) {
+			throw new IllegalArgumentException("ingestion.lexical.b must be in [0, 1]");
+		}
+		this.vectorStore = vectorStore;
+		this.enabled = lexical.isEnabled();
+		this.k1 = lexical.getK1();
+		this.b = lexical.getB();
+		this.builder = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "lexical-index-builder");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@EventListener
+	public void onVectorStoreChanged(VectorStoreChangedEvent event) {
+		if (!enabled) {
+			return;
+		}
+		if (event.replacedAll()) {
+			builder.execute(this::rebuild);
+		}
+		else if (!event.changedSources().isEmpty()) {
+			update(event.changedSources());
+		}
+	}
+
+	public void rebuild() {
+		long started = System.nanoTime();
+		Snapshot built;
+		synchronized (updateLock) {
+			Builder next = new Builder(Snapshot.EMPTY);
+			vectorStore.forEachEntry((vector, metadata) -> next.add(metadata));
+			built = next.build();
+			snapshot = built;
+		}
+		logger.info("Built lexical index over {} chunks with {} terms in {} ms", built.documents,
+			built.postings.size(), (System.nanoTime() - started) / 1_000_000L);
+	}
+
+	// Drops the documents of the given sources and re-reads whatever the vector store now holds for them.
+	public void update(Set<String> sourcePaths) {
+		long started = System.nanoTime();
+		synchronized (updateLock) {
+			Builder next = new Builder(snapshot);
+			for (String sourcePath : sourcePaths) {
+				next.remove(sourcePath);
+				vectorStore.forEachEntry(sourcePath, (vector, metadata) -> next.add(metadata));
+			}
+			snapshot = next.build();
+		}
+		logger.info("Updated lexical index for {} sources in {} ms; it now covers {} chunks", sourcePaths.size(),
+			(System.nanoTime() - started) / 1_000_000L, snapshot.documents);
+	}
+
+	public int size() {
+		return snapshot.documents;
+	}
+
+	@PreDestroy
+	public void close() {
+		builder.shutdownNow();
+	}
+
+	// Best first; each query term counts once however often it is repeated. The posting lists of the query terms are
+	// walked side by side in document order, so a query costs the postings it touches rather than the corpus size.
+	public List<Hit> search(String query, int topK) {
+		if (topK <= 0) {
+			throw new IllegalArgumentException("topK must be positive");
+		}
+		Snapshot current = snapshot;
+		if (current.documents == 0 || query == null) {
+			return List.of();
+		}
+		List<Postings> matched = new ArrayList<>();
+		List<Double> idfs = new ArrayList<>();
+		for (String term : new LinkedHashSet<>(tokenize(query))) {
+			Postings termPostings = current.postings.get(term);
+			if (termPostings != null) {
+				matched.add(termPostings);
+				int frequency = termPostings.size();
+				idfs.add(Math.log(1.0d + (current.documents - frequency + 0.5d) / (frequency + 0.5d)));
+			}
+		}
+		if (matched.isEmpty()) {
+			return List.of();
+		}
+		double averageLength = (double) current.totalLength / current.documents;
+		int[] cursors = new int[matched.size()];
+		TopKCollector collector = new TopKCollector(Math.min(topK, current.documents));
+		while (true) {
+			int doc = Integer.MAX_VALUE;
+			for (int t = 0; t < cursors.length; t++) {
+				if (cursors[t] < matched.get(t).size()) {
+					doc = Math.min(doc, matched.get(t).docs[cursors[t]]);
+				}
+			}
+			if (doc == Integer.MAX_VALUE) {
+				break;
+			}
+			double norm = k1 * (1.0d - b + b * current.documentLengths[doc] / averageLength);
+			double score = 0.0d;
+			for (int t = 0; t < cursors.length; t++) {
+				Postings termPostings = matched.get(t);
+				if (cursors[t] < termPostings.size() && termPostings.docs[cursors[t]] == doc) {
+					int frequency = termPostings.frequencies[cursors[t]++];
+					score += idfs.get(t) * frequency * (k1 + 1.0d) / (frequency + norm);
+				}
+			}
+			collector.offer(doc, (float) score);
+		}
+		float[] topScores = new float[collector.size()];
+		int[] docs = collector.drainDescending(topScores);
+		List<Hit> hits = new ArrayList<>(docs.length);
+		for (int i = 0; i < docs.length; i++) {
+			hits.add(new Hit(current.chunkIds[docs[i]], topScores[i]));
+		}
+		return hits;
+	}
+
+	// Lowercased runs of letters and digits, so "SKU-4411" is found by both "sku" and "4411".
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			}
+			else if (!wordChar && start >= 0) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	public record Hit(String chunkId, double score) {
+	}
+
+	// Document ids are slots in chunkIds; a null slot is a removed document, which no posting list refers to.
+	private record Snapshot(String[] chunkIds, int[] documentLengths, int documents, long totalLength,
+			Map<String, Postings> postings, Map<String, Source> sources) {
+
+		static final Snapshot EMPTY = new Snapshot(new String[0], new int[0], 0, 0L, Map.of(), Map.of());
+
+	}
+
+	// Sorted by document id, which new documents only ever extend.
+	private record Postings(int[] docs, int[] frequencies) {
+
+		int size() {
+			return docs.length;
+		}
+
+	}
+
+	// The slots of a source's documents and every term they contain, so the source can be removed without its text.
+	private record Source(int[] docs, String[] terms) {
+	}
+
+	// Copy-on-write edit of a snapshot: only the posting lists of removed or added documents are rewritten.
+	private static final class Builder {
+
+		private String[] chunkIds;
+		private int[] documentLengths;
+		private int slots;
+		private int documents;
+		private long totalLength;
+		private final Map<String, Postings> postings;
+		private final Map<String, Source> sources;
+		private final Set<String> removedTerms = new HashSet<>();
+		private final Map<String, PostingsBuffer> added = new HashMap<>();
+		private final Map<String, SourceBuffer> addedSources = new HashMap<>();
+		private final Map<String, Integer> frequencies = new HashMap<>();
+
+		Builder(Snapshot base) {
+			this.chunkIds = Arrays.copyOf(base.chunkIds, Math.max(16, base.chunkIds.length));
+			this.documentLengths = Arrays.copyOf(base.documentLengths, chunkIds.length);
+			this.slots = base.chunkIds.length;
+			this.documents = base.documents;
+			this.totalLength = base.totalLength;
+			this.postings = new HashMap<>(base.postings);
+			this.sources = new HashMap<>(base.sources);
+		}
+
+		void remove(String sourcePath) {
+			Source source = sources.remove(sourcePath);
+			if (source == null) {
+				return;
+			}
+			for (int doc : source.docs) {
+				chunkIds[doc] = null;
+				totalLength -= documentLengths[doc];
+				documents--;
+			}
+			removedTerms.addAll(Arrays.asList(source.terms));
+		}
+
+		void add(Map<String, String> metadata) {
+			String chunkId = metadata.get(VectorStore.CHUNK_ID);
+			String text = metadata.get(VectorStore.TEXT);
+			if (chunkId == null || text == null) {
+				return;
+			}
+			if (slots == chunkIds.length) {
+				chunkIds = Arrays.copyOf(chunkIds, slots * 2);
+				documentLengths = Arrays.copyOf(documentLengths, slots * 2);
+			}
+			int doc = slots++;
+			List<String> tokens = tokenize(text);
+			frequencies.clear();
+			for (String token : tokens) {
+				frequencies.merge(token, 1, Integer::sum);
+			}
+			SourceBuffer source = addedSources.computeIfAbsent(
+					Objects.requireNonNullElse(metadata.get(VectorStore.SOURCE_PATH), ""), key -> new SourceBuffer());
+			source.add(doc);
+			frequencies.forEach((term, frequency) -> {
+				added.computeIfAbsent(term, ignored -> new PostingsBuffer()).add(doc, frequency);
+				source.terms.add(term);
+			});
+			chunkIds[doc] = chunkId;
+			documentLengths[doc] = tokens.size();
+			totalLength += tokens.size();
+			documents++;
+		}
+
+		Snapshot build() {
+			for (String term : removedTerms) {
+				Postings live = withoutRemoved(postings.get(term));
+				if (live == null) {
+					postings.remove(term);
+				}
+				else {
+					postings.put(term, live);
+				}
+			}
+			added.forEach((term, buffer) -> postings.merge(term, buffer.toPostings(), Builder::concat));
+			addedSources.forEach((sourcePath, buffer) -> sources.put(sourcePath, buffer.toSource()));
+			if (slots - documents >= Math.max(MIN_COMPACTION_SLOTS, documents)) {
+				compact();
+			}
+			return new Snapshot(Arrays.copyOf(chunkIds, slots), Arrays.copyOf(documentLengths, slots), documents,
+					totalLength, postings, sources);
+		}
+
+		private Postings withoutRemoved(Postings current) {
+			if (current == null) {
+				return null;
+			}
+			PostingsBuffer live = new PostingsBuffer();
+			for (int i = 0; i < current.size(); i++) {
+				if (chunkIds[current.docs[i]] != null) {
+					live.add(current.docs[i], current.frequencies[i]);
+				}
+			}
+			return live.size == 0 ? null : live.toPostings();
+		}
+
+		// Renumbers the live documents densely once removed slots outnumber them; order is kept, so postings stay
+		// sorted and no text has to be tokenized again.
+		private void compact() {
+			int[] remap = new int[slots];
+			int live = 0;
+			for (int doc = 0; doc < slots; doc++) {
+				remap[doc] = live;
+				if (chunkIds[doc] != null) {
+					chunkIds[live] = chunkIds[doc];
+					documentLengths[live] = documentLengths[doc];
+					live++;
+				}
+			}
+			Arrays.fill(chunkIds, live, slots, null);
+			slots = live;
+			postings.replaceAll((term, current) -> new Postings(renumber(current.docs, remap), current.frequencies));
+			sources.replaceAll((sourcePath, current) -> new Source(renumber(current.docs, remap), current.terms));
+		}
+
+		private static int[] renumber(int[] docs, int[] remap) {
+			int[] renumbered = new int[docs.length];
+			for (int i = 0; i < docs.length; i++) {
+				renumbered[i] = remap[docs[i]];
+			}
+			return renumbered;
+		}
+
+		private static Postings concat(Postings first, Postings second) {
+			return new Postings(concat(first.docs, second.docs), concat(first.frequencies, second.frequencies));
+		}
+
+		private static int[] concat(int[] first, int[] second) {
+			int[] joined = Arrays.copyOf(first, first.length + second.length);
+			System.arraycopy(second, 0, joined, first.length, second.length);
+			return joined;
+		}
+
+	}
+
+	private static final class PostingsBuffer {
+
+		private int[] docs = new int[4];
+		private int[] frequencies = new int[4];
+		private int size;
+
+		void add(int doc, int frequency) {
+			if (size == docs.length) {
+				docs = Arrays.copyOf(docs, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			docs[size] = doc;
+			frequencies[size] = frequency;
+			size++;
+		}
+
+		Postings toPostings() {
+			return new Postings(Arrays.copyOf(docs, size), Arrays.copyOf(frequencies, size));
+		}
+
+	}
+
+	private static final class SourceBuffer {
+
+		private int[] docs = new int[4];
+		private int size;
+		private final Set<String> terms = new HashSet<>();
+
+		void add(int doc) {
+			if (size == docs.length) {
+				docs = Arrays.copyOf(docs, size * 2);
+			}
+			docs[size++] = doc;
+		}
+
+		Source toSource() {
+			return new Source(Arrays.copyOf(docs, size), terms.toArray(String[]::new));
+		}
+
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+final class ChunkIds {
+
+	private ChunkIds() {
+	}
+
+	static String of(String sourcePath, int chunkIndex, String text) {
+		String contentHash = sha256(text);
+		return sha256(sourcePath + '\0' + chunkIndex + '\0' + contentHash);
+	}
+
+	static String sha256(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+	}
+
+}
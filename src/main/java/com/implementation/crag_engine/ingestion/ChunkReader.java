@@ -0,0 +1,130 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+final class ChunkReader implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkReader.class);
+	private static final Chunk END_OF_SOURCE = new Chunk(null, null);
+
+	private final TextChunker textChunker;
+	private final int chunkSize;
+	private final int chunkOverlap;
+	private final int parallelism;
+	private final BlockingQueue<Chunk> queue;
+	private final ExecutorService readers;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	ChunkReader(TextChunker textChunker, int chunkSize, int chunkOverlap, IngestionProperties.Pipeline settings) {
+		if (settings.getReaderParallelism() <= 0 || settings.getChunkQueueCapacity() <= 0) {
+			throw new IllegalArgumentException("ingestion.pipeline settings must be positive");
+		}
+		this.textChunker = textChunker;
+		this.chunkSize = chunkSize;
+		this.chunkOverlap = chunkOverlap;
+		this.parallelism = settings.getReaderParallelism();
+		this.queue = new ArrayBlockingQueue<>(settings.getChunkQueueCapacity());
+		AtomicInteger threadIndex = new AtomicInteger();
+		this.readers = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "document-reader-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	long readAll(List<DocumentSource> sources, BiConsumer<String, Map<String, String>> sink) {
+		int workers = Math.min(parallelism, sources.size());
+		AtomicInteger next = new AtomicInteger();
+		for (int i = 0; i < workers; i++) {
+			readers.execute(() -> {
+				try {
+					int index;
+					while (failure.get() == null && (index = next.getAndIncrement()) < sources.size()) {
+						read(sources.get(index));
+					}
+				}
+				catch (Throwable ex) {
+					failure.compareAndSet(null, ex);
+				}
+				finally {
+					enqueue(END_OF_SOURCE);
+				}
+			});
+		}
+		long chunks = 0;
+		int finishedWorkers = 0;
+		try {
+			while (finishedWorkers < workers) {
+				Chunk chunk = queue.take();
+				if (chunk == END_OF_SOURCE) {
+					finishedWorkers++;
+				}
+				else if (failure.get() == null) {
+					sink.accept(chunk.text(), chunk.metadata());
+					chunks++;
+				}
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading documents", ex);
+		}
+		catch (RuntimeException ex) {
+			failure.compareAndSet(null, ex);
+			throw ex;
+		}
+		Throwable cause = failure.get();
+		if (cause != null) {
+			throw new IllegalStateException("Failed to read documents", cause);
+		}
+		return chunks;
+	}
+
+	@Override
+	public void close() {
+		readers.shutdownNow();
+	}
+
+	private void read(DocumentSource source) throws IOException {
+		int[] chunkIndex = {0};
+		try (Reader reader = source.open()) {
+			textChunker.chunk(reader, chunkSize, chunkOverlap, text -> {
+				Map<String, String> metadata = new HashMap<>();
+				metadata.put(VectorStore.SOURCE_PATH, source.id());
+				metadata.put(VectorStore.CHUNK_ID, ChunkIds.of(source.id(), chunkIndex[0], text));
+				metadata.put("chunkIndex", Integer.toString(chunkIndex[0]++));
+				metadata.put(VectorStore.TEXT, text);
+				enqueue(new Chunk(text, metadata));
+			});
+		}
+		logger.debug("Read {} chunks from {}", chunkIndex[0], source.id());
+	}
+
+	private void enqueue(Chunk chunk) {
+		try {
+			queue.put(chunk);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while queueing document chunks", ex);
+		}
+	}
+
+	private record Chunk(String text, Map<String, String> metadata) {
+	}
+
+}
@@ -1,12 +1,21 @@
 package com.implementation.crag_engine.ingestion;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -18,36 +27,185 @@ public class DataIngestionService {
 	private final TextChunker textChunker;
 	private final EmbeddingService embeddingService;
 	private final VectorStore vectorStore;
+	private final VectorStoreSnapshots snapshots;
 	private final IngestionProperties properties;
+	private final ApplicationEventPublisher eventPublisher;
 
 	public DataIngestionService(DocumentLoader documentLoader, TextChunker textChunker, EmbeddingService embeddingService,
-			VectorStore vectorStore, IngestionProperties properties) {
+			VectorStore vectorStore, VectorStoreSnapshots snapshots, IngestionProperties properties,
+			ApplicationEventPublisher eventPublisher) {
 		this.documentLoader = documentLoader;
 		this.textChunker = textChunker;
 		this.embeddingService = embeddingService;
 		this.vectorStore = vectorStore;
+		this.snapshots = snapshots;
 		this.properties = properties;
+		this.eventPublisher = eventPublisher;
 	}
 
 	public void ingest() {
-		String document = documentLoader.load(properties.getSourcePath());
-		List<String> chunks = textChunker.chunk(document, properties.getChunkSize(), properties.getChunkOverlap());
-		logger.info("Loaded {} characters and produced {} chunks", document.length(), chunks.size());
-		AtomicInteger index = new AtomicInteger();
-		int ingested = 0;
-		for (String chunk : chunks) {
-			vectorStore.add(embeddingService.embed(chunk), metadataFor(chunk, index.getAndIncrement()));
-			ingested++;
-		}
-		logger.info("Vector store now holds {} embeddings", ingested);
-	}
-
-	private Map<String, String> metadataFor(String chunk, int chunkIndex) {
-		Map<String, String> metadata = new HashMap<>();
-		metadata.put("sourcePath", properties.getSourcePath());
-		metadata.put("chunkIndex", Integer.toString(chunkIndex));
-		metadata.put("text", chunk);
-		return metadata;
+		List<DocumentSource> sources = documentLoader.resolve(properties.getSourcePath());
+		if (properties.getMode() == IngestionProperties.Mode.INCREMENTAL) {
+			ingestChanges(sources);
+			return;
+		}
+		byte[] fingerprint = fingerprint(sources);
+		if (vectorStore.size() == 0 && snapshots.restore(fingerprint)) {
+			eventPublisher.publishEvent(VectorStoreChangedEvent.replaced(vectorStore.size()));
+			return;
+		}
+		long bytes = sources.stream().mapToLong(DocumentSource::size).sum();
+		logger.info("Ingesting {} documents ({} bytes) from {}", sources.size(), bytes, properties.getSourcePath());
+		long chunks;
+		long ingested;
+		try (ChunkReader reader = new ChunkReader(textChunker, properties.getChunkSize(), properties.getChunkOverlap(),
+				properties.getPipeline());
+				EmbeddingPipeline pipeline = new EmbeddingPipeline(embeddingService, vectorStore,
+						properties.getPipeline(), false)) {
+			chunks = reader.readAll(sources, pipeline::accept);
+			ingested = pipeline.finish();
+		}
+		logger.info("Read {} chunks; vector store now holds {} embeddings", chunks, ingested);
+		reportRecall();
+		snapshots.save(fingerprint);
+		eventPublisher.publishEvent(VectorStoreChangedEvent.replaced(vectorStore.size()));
+	}
+
+	private void ingestChanges(List<DocumentSource> sources) {
+		// The snapshot only has to match the chunking settings; the manifest says which documents it reflects.
+		byte[] fingerprint = fingerprint(List.of());
+		if (vectorStore.size() == 0 && snapshots.restore(fingerprint)) {
+			// Published before re-ingesting, so listeners index the restored store while the changes are embedded.
+			eventPublisher.publishEvent(VectorStoreChangedEvent.replaced(vectorStore.size()));
+		}
+		IngestionManifest manifest = vectorStore.size() > 0 ? loadManifest() : IngestionManifest.empty();
+		IngestionManifest updated = IngestionManifest.empty();
+		List<DocumentSource> changed = new ArrayList<>();
+		Set<String> removed = new HashSet<>();
+		manifest.sources().forEach(removed::add);
+		for (DocumentSource source : sources) {
+			removed.remove(source.id());
+			IngestionManifest.Entry previous = manifest.get(source.id());
+			if (previous != null && previous.size() == source.size()
+					&& previous.lastModified() == source.lastModified()) {
+				updated.put(source.id(), previous);
+				continue;
+			}
+			String contentHash = contentHash(source);
+			updated.put(source.id(), new IngestionManifest.Entry(source.size(), source.lastModified(), contentHash));
+			if (previous == null || !previous.contentHash().equals(contentHash)) {
+				changed.add(source);
+			}
+		}
+		if (changed.isEmpty() && removed.isEmpty()) {
+			logger.info("All {} documents are unchanged; vector store holds {} embeddings", sources.size(),
+				vectorStore.size());
+			saveManifest(updated);
+			return;
+		}
+		logger.info("Re-ingesting {} changed documents and removing {} deleted documents", changed.size(),
+			removed.size());
+		Map<String, Set<String>> chunkIdsBySource = new HashMap<>();
+		long chunks;
+		try (ChunkReader reader = new ChunkReader(textChunker, properties.getChunkSize(), properties.getChunkOverlap(),
+				properties.getPipeline());
+				EmbeddingPipeline pipeline = new EmbeddingPipeline(embeddingService, vectorStore,
+						properties.getPipeline(), true)) {
+			chunks = reader.readAll(changed, (text, metadata) -> {
+				chunkIdsBySource.computeIfAbsent(metadata.get(VectorStore.SOURCE_PATH), key -> new HashSet<>())
+					.add(metadata.get(VectorStore.CHUNK_ID));
+				pipeline.accept(text, metadata);
+			});
+			pipeline.finish();
+		}
+		// New chunks are already searchable, so dropping the stale ones never leaves a document missing.
+		int deleted = 0;
+		for (DocumentSource source : changed) {
+			deleted += vectorStore.deleteBySource(source.id(), chunkIdsBySource.getOrDefault(source.id(), Set.of()));
+		}
+		for (String source : removed) {
+			deleted += vectorStore.deleteBySource(source);
+		}
+		logger.info("Upserted {} chunks and deleted {} stale chunks; vector store now holds {} embeddings", chunks,
+			deleted, vectorStore.size());
+		reportRecall();
+		snapshots.save(fingerprint);
+		saveManifest(updated);
+		Set<String> changedSources = new HashSet<>(removed);
+		changed.forEach(source -> changedSources.add(source.id()));
+		eventPublisher.publishEvent(new VectorStoreChangedEvent(vectorStore.size(), changedSources));
+	}
+
+	private IngestionManifest loadManifest() {
+		Path path = Path.of(properties.getSnapshot().getManifestPath());
+		try {
+			return IngestionManifest.load(path);
+		}
+		catch (IOException | RuntimeException ex) {
+			logger.warn("Ignoring unreadable ingestion manifest at {}; all documents will be re-ingested", path, ex);
+			return IngestionManifest.empty();
+		}
+	}
+
+	private void saveManifest(IngestionManifest manifest) {
+		if (!properties.getSnapshot().isEnabled()) {
+			return;
+		}
+		Path path = Path.of(properties.getSnapshot().getManifestPath());
+		try {
+			manifest.save(path);
+		}
+		catch (IOException ex) {
+			logger.warn("Failed to write ingestion manifest to {}", path, ex);
+		}
+	}
+
+	private static String contentHash(DocumentSource source) {
+		try {
+			return source.contentHash();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to read document " + source.id(), ex);
+		}
+	}
+
+	private byte[] fingerprint(List<DocumentSource> sources) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			String settings = String.join("|", properties.getSourcePath(), Integer.toString(properties.getChunkSize()),
+					Integer.toString(properties.getChunkOverlap()), properties.getEmbedding().getModel());
+			digest.update(settings.getBytes(StandardCharsets.UTF_8));
+			// Size and modification time stand in for content so that unchanged corpora are not re-read.
+			for (DocumentSource source : sources) {
+				digest.update((byte) 0);
+				String identity = String.join("|", source.id(), Long.toString(source.size()),
+						Long.toString(source.lastModified()));
+				digest.update(identity.getBytes(StandardCharsets.UTF_8));
+			}
+			return digest.digest();
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+	}
+
+	private void reportRecall() {
+		IngestionProperties.Store store = properties.getStore();
+		if (!(vectorStore instanceof ApproximateVectorStore approximateStore) || store.getRecallSampleSize() <= 0) {
+			return;
+		}
+		double recall = approximateStore.estimateRecall(store.getRecallSampleSize(), store.getRecallTopK());
+		logger.info("Approximate vector store recall@{}={} against exact search over {} sampled queries",
+			store.getRecallTopK(), String.format("%.3f", recall), store.getRecallSampleSize());
+		ApproximateVectorStore.VectorFootprint footprint = approximateStore.footprint();
+		logger.info("Vector store holds {} embeddings in {} heap bytes and {} mapped bytes; an in-memory store of "
+				+ "boxed doubles would need about {} heap bytes", footprint.embeddings(), footprint.heapBytes(),
+				footprint.mappedBytes(), boxedBytes(footprint));
+	}
+
+	// ArrayList<Double> per vector: a 4-byte reference plus a 16-byte Double per component, and the list overhead.
+	private static long boxedBytes(ApproximateVectorStore.VectorFootprint footprint) {
+		return footprint.embeddings() * (20L * footprint.dimension() + 40L);
 	}
 
 }
@@ -0,0 +1,11 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.nio.FloatBuffer;
+
+interface DistanceKernel {
+
+	float dot(float[] query, float[] vectors, int offset, int dimension);
+
+	float dot(float[] query, FloatBuffer vectors, int offset, int dimension);
+
+}
@@ -0,0 +1,37 @@
+package com.implementation.crag_engine.ingestion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+final class DistanceKernels {
+
+	private static final Logger logger = LoggerFactory.getLogger(DistanceKernels.class);
+	private static final String VECTOR_API_KERNEL = "com.implementation.crag_engine.ingestion.VectorApiDistanceKernel";
+
+	private DistanceKernels() {
+	}
+
+	static DistanceKernel select() {
+		DistanceKernel scalar = new ScalarDistanceKernel();
+		try {
+			DistanceKernel vectorized = (DistanceKernel) Class.forName(VECTOR_API_KERNEL).getDeclaredConstructor()
+				.newInstance();
+			// The incubator API changes between releases, so a kernel that links but disagrees is not trusted.
+			float[] probe = new float[37];
+			for (int i = 0; i < probe.length; i++) {
+				probe[i] = (i % 7) - 3;
+			}
+			if (vectorized.dot(probe, probe, 0, probe.length) == scalar.dot(probe, probe, 0, probe.length)) {
+				logger.info("Using the Vector API distance kernel");
+				return vectorized;
+			}
+		}
+		catch (ReflectiveOperationException | LinkageError ex) {
+			logger.info("Vector API is unavailable ({}); using the scalar distance kernel", ex.toString());
+			return scalar;
+		}
+		logger.warn("Vector API distance kernel failed its self-check; using the scalar distance kernel");
+		return scalar;
+	}
+
+}
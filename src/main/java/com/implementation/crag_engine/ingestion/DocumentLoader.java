@@ -1,9 +1,19 @@
 package com.implementation.crag_engine.ingestion;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
@@ -11,22 +21,115 @@ import org.springframework.stereotype.Component;
 @Component
 public class DocumentLoader {
 
+	private static final String CLASSPATH_PREFIX = "classpath:";
+	private static final String GLOB_CHARACTERS = "*?[{";
+
 	private final ResourceLoader resourceLoader;
 
 	public DocumentLoader(ResourceLoader resourceLoader) {
 		this.resourceLoader = resourceLoader;
 	}
 
-	public String load(String resourcePath) {
-		Resource resource = resourceLoader.getResource("classpath:" + resourcePath);
+	public List<DocumentSource> resolve(String location) {
+		if (location.startsWith(CLASSPATH_PREFIX)) {
+			return List.of(classpathSource(location.substring(CLASSPATH_PREFIX.length())));
+		}
+		Resource classpathResource = resourceLoader.getResource(CLASSPATH_PREFIX + location);
+		if (classpathResource.exists()) {
+			return List.of(toSource(location, classpathResource));
+		}
+		List<DocumentSource> sources = findFiles(location).stream()
+			.map(path -> toSource(path.toString(), new FileSystemResource(path)))
+			.toList();
+		if (sources.isEmpty()) {
+			throw new IllegalArgumentException("No documents found on the classpath or file system at: " + location);
+		}
+		return sources;
+	}
+
+	private DocumentSource classpathSource(String resourcePath) {
+		Resource resource = resourceLoader.getResource(CLASSPATH_PREFIX + resourcePath);
 		if (!resource.exists()) {
 			throw new IllegalArgumentException("Resource not found in classpath: " + resourcePath);
 		}
-		try (InputStream inputStream = resource.getInputStream()) {
-			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		return toSource(resourcePath, resource);
+	}
+
+	private List<Path> findFiles(String location) {
+		int globStart = indexOfGlob(location);
+		if (globStart < 0) {
+			Path path = Paths.get(location);
+			if (Files.isRegularFile(path)) {
+				return List.of(path);
+			}
+			return Files.isDirectory(path) ? walk(path, null) : List.of();
+		}
+		int baseEnd = location.lastIndexOf('/', globStart);
+		Path base = Paths.get(baseEnd < 0 ? "." : location.substring(0, Math.max(baseEnd, 1)));
+		String pattern = location.substring(baseEnd + 1);
+		return Files.isDirectory(base) ? walk(base, globMatcher(pattern)) : List.of();
+	}
+
+	// Java's "**/" needs at least one directory, so "docs/**/*.md" would skip "docs/a.md"; like most glob dialects,
+	// a "**/" segment here also matches no directory at all.
+	private static PathMatcher globMatcher(String pattern) {
+		List<PathMatcher> matchers = withOptionalDirectories(pattern, 0).stream()
+			.map(variant -> FileSystems.getDefault().getPathMatcher("glob:" + variant))
+			.toList();
+		return path -> matchers.stream().anyMatch(matcher -> matcher.matches(path));
+	}
+
+	private static Set<String> withOptionalDirectories(String pattern, int from) {
+		int index = pattern.indexOf("**/", from);
+		while (index > 0 && pattern.charAt(index - 1) != '/') {
+			index = pattern.indexOf("**/", index + 1);
+		}
+		if (index < 0) {
+			return Set.of(pattern);
+		}
+		Set<String> variants = new LinkedHashSet<>(withOptionalDirectories(pattern, index + 3));
+		variants.addAll(withOptionalDirectories(pattern.substring(0, index) + pattern.substring(index + 3), index));
+		return variants;
+	}
+
+	private List<Path> walk(Path base, PathMatcher matcher) {
+		try (Stream<Path> paths = Files.walk(base)) {
+			return paths.filter(Files::isRegularFile)
+				.filter(path -> !path.getFileName().toString().startsWith("."))
+				.filter(path -> matcher == null || matcher.matches(base.relativize(path)))
+				.sorted(Comparator.naturalOrder())
+				.toList();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to list documents under " + base, ex);
+		}
+	}
+
+	private static int indexOfGlob(String location) {
+		for (int i = 0; i < location.length(); i++) {
+			if (GLOB_CHARACTERS.indexOf(location.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static DocumentSource toSource(String id, Resource resource) {
+		try {
+			return new DocumentSource(id, resource.contentLength(), lastModified(resource), resource);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read resource " + id, ex);
+		}
+	}
+
+	private static long lastModified(Resource resource) {
+		try {
+			return resource.lastModified();
 		}
 		catch (IOException ex) {
-			throw new IllegalStateException("Failed to read resource " + resourcePath, ex);
+			// Some resources, such as entries in nested jars, do not report a modification time.
+			return 0L;
 		}
 	}
 
@@ -0,0 +1,40 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.core.io.Resource;
+
+public record DocumentSource(String id, long size, long lastModified, Resource resource) {
+
+	private static final int READ_BUFFER_CHARS = 64 * 1024;
+	private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+	public Reader open() throws IOException {
+		return new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8),
+				READ_BUFFER_CHARS);
+	}
+
+	public String contentHash() throws IOException {
+		try (InputStream inputStream = resource.getInputStream()) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[HASH_BUFFER_BYTES];
+			int read;
+			while ((read = inputStream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, read);
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class EmbeddingCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(EmbeddingCache.class);
+	private static final String FILE_SUFFIX = ".vec";
+
+	private final boolean enabled;
+	private final Map<String, float[]> heap;
+	private final Path diskDirectory;
+	private final long diskMaxBytes;
+	private final AtomicLong diskBytes = new AtomicLong();
+	private final Counter heapHits;
+	private final Counter diskHits;
+	private final Counter misses;
+
+	public EmbeddingCache(IngestionProperties properties, MeterRegistry meterRegistry) {
+		IngestionProperties.Cache settings = properties.getEmbedding().getCache();
+		if (settings.getMaxEntries() <= 0) {
+			throw new IllegalArgumentException("ingestion.embedding.cache.max-entries must be positive");
+		}
+		this.enabled = settings.isEnabled();
+		int maxEntries = settings.getMaxEntries();
+		this.heap = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.diskDirectory = enabled && StringUtils.hasText(settings.getDiskPath()) ? Path.of(settings.getDiskPath())
+				: null;
+		this.diskMaxBytes = settings.getDiskMaxBytes();
+		this.heapHits = hitCounter(meterRegistry, "heap");
+		this.diskHits = hitCounter(meterRegistry, "disk");
+		this.misses = Counter.builder("crag.embedding.cache.requests")
+			.tag("result", "miss")
+			.tag("tier", "none")
+			.register(meterRegistry);
+		Gauge.builder("crag.embedding.cache.entries", this, EmbeddingCache::heapSize)
+			.tag("tier", "heap")
+			.register(meterRegistry);
+		if (diskDirectory != null) {
+			initializeDiskTier();
+		}
+	}
+
+	public List<Double> get(String model, String text) {
+		if (!enabled) {
+			return null;
+		}
+		String key = key(model, text);
+		float[] vector;
+		synchronized (heap) {
+			vector = heap.get(key);
+		}
+		if (vector != null) {
+			heapHits.increment();
+			return toList(vector);
+		}
+		vector = readFromDisk(key);
+		if (vector != null) {
+			diskHits.increment();
+			synchronized (heap) {
+				heap.put(key, vector);
+			}
+			return toList(vector);
+		}
+		misses.increment();
+		return null;
+	}
+
+	public void put(String model, String text, List<Double> embedding) {
+		if (!enabled) {
+			return;
+		}
+		String key = key(model, text);
+		float[] vector = new float[embedding.size()];
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = embedding.get(i).floatValue();
+		}
+		synchronized (heap) {
+			heap.put(key, vector);
+		}
+		writeToDisk(key, vector);
+	}
+
+	private int heapSize() {
+		synchronized (heap) {
+			return heap.size();
+		}
+	}
+
+	private float[] readFromDisk(String key) {
+		if (diskDirectory == null) {
+			return null;
+		}
+		Path file = diskFile(key);
+		try {
+			byte[] bytes = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			float[] vector = new float[bytes.length / Float.BYTES];
+			ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+			return vector;
+		}
+		catch (NoSuchFileException ex) {
+			return null;
+		}
+		catch (IOException ex) {
+			logger.warn("Failed to read cached embedding {}", file, ex);
+			return null;
+		}
+	}
+
+	private void writeToDisk(String key, float[] vector) {
+		if (diskDirectory == null) {
+			return;
+		}
+		Path file = diskFile(key);
+		if (Files.exists(file)) {
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asFloatBuffer().put(vector);
+		try {
+			Files.createDirectories(file.getParent());
+			Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+			Files.write(temp, buffer.array());
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex) {
+			logger.warn("Failed to write cached embedding {}", file, ex);
+			return;
+		}
+		if (diskBytes.addAndGet(buffer.capacity()) > diskMaxBytes) {
+			evictFromDisk();
+		}
+	}
+
+	private synchronized void evictFromDisk() {
+		if (diskBytes.get() <= diskMaxBytes) {
+			return;
+		}
+		List<DiskEntry> entries = new ArrayList<>();
+		for (Path file : listDiskFiles()) {
+			try {
+				entries.add(new DiskEntry(file, Files.getLastModifiedTime(file), Files.size(file)));
+			}
+			catch (IOException ex) {
+				logger.debug("Skipping cached embedding {} during eviction", file, ex);
+			}
+		}
+		entries.sort(Comparator.comparing(DiskEntry::lastModified));
+		long target = diskMaxBytes - diskMaxBytes / 10;
+		long total = entries.stream().mapToLong(DiskEntry::size).sum();
+		int evicted = 0;
+		for (DiskEntry entry : entries) {
+			if (total <= target) {
+				break;
+			}
+			try {
+				Files.deleteIfExists(entry.file());
+				total -= entry.size();
+				evicted++;
+			}
+			catch (IOException ex) {
+				logger.debug("Failed to evict cached embedding {}", entry.file(), ex);
+			}
+		}
+		diskBytes.set(total);
+		logger.info("Evicted {} cached embeddings from {}; disk tier now holds {} bytes", evicted, diskDirectory,
+			total);
+	}
+
+	private void initializeDiskTier() {
+		try {
+			Files.createDirectories(diskDirectory);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to create embedding cache directory " + diskDirectory, ex);
+		}
+		diskBytes.set(listDiskFiles().stream().mapToLong(EmbeddingCache::fileSize).sum());
+		logger.info("Embedding disk cache at {} holds {} bytes", diskDirectory, diskBytes.get());
+	}
+
+	private List<Path> listDiskFiles() {
+		try (Stream<Path> files = Files.walk(diskDirectory, 2)) {
+			return new ArrayList<>(files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX)).toList());
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to list embedding cache directory " + diskDirectory, ex);
+		}
+	}
+
+	private Path diskFile(String key) {
+		return diskDirectory.resolve(key.substring(0, 2)).resolve(key + FILE_SUFFIX);
+	}
+
+	private static String key(String model, String text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(model.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(text.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+	}
+
+	private static List<Double> toList(float[] vector) {
+		List<Double> list = new ArrayList<>(vector.length);
+		for (float value : vector) {
+			list.add((double) value);
+		}
+		return list;
+	}
+
+	private static Counter hitCounter(MeterRegistry meterRegistry, String tier) {
+		return Counter.builder("crag.embedding.cache.requests")
+			.tag("result", "hit")
+			.tag("tier", tier)
+			.register(meterRegistry);
+	}
+
+	private static long fileSize(Path file) {
+		try {
+			return Files.size(file);
+		}
+		catch (IOException ex) {
+			return 0;
+		}
+	}
+
+	private record DiskEntry(Path file, FileTime lastModified, long size) {
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+final class EmbeddingPipeline implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(EmbeddingPipeline.class);
+	private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private final EmbeddingService embeddingService;
+	private final VectorStore vectorStore;
+	private final int batchSize;
+	private final int maxPendingBatches;
+	private final boolean upsert;
+	private final ExecutorService workers;
+	private final Semaphore pendingBatches;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final AtomicLong embedded = new AtomicLong();
+	private final AtomicLong lastProgressNanos;
+	private final long startedNanos;
+	private List<String> texts;
+	private List<Map<String, String>> metadata;
+
+	EmbeddingPipeline(EmbeddingService embeddingService, VectorStore vectorStore, IngestionProperties.Pipeline settings,
+			boolean upsert) {
+		if (settings.getBatchSize() <= 0 || settings.getParallelism() <= 0 || settings.getMaxPendingBatches() <= 0) {
+			throw new IllegalArgumentException("ingestion.pipeline settings must be positive");
+		}
+		this.embeddingService = embeddingService;
+		this.vectorStore = vectorStore;
+		this.batchSize = settings.getBatchSize();
+		this.maxPendingBatches = settings.getMaxPendingBatches();
+		this.upsert = upsert;
+		AtomicInteger threadIndex = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(settings.getParallelism(), runnable -> {
+			Thread thread = new Thread(runnable, "embedding-worker-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.pendingBatches = new Semaphore(maxPendingBatches);
+		this.startedNanos = System.nanoTime();
+		this.lastProgressNanos = new AtomicLong(startedNanos);
+		resetBatch();
+	}
+
+	void accept(String text, Map<String, String> chunkMetadata) {
+		rethrowFailure();
+		texts.add(text);
+		metadata.add(chunkMetadata);
+		if (texts.size() >= batchSize) {
+			submitBatch();
+		}
+	}
+
+	long finish() {
+		if (!texts.isEmpty()) {
+			submitBatch();
+		}
+		try {
+			// Every in-flight batch holds a permit, so draining them all waits for completion.
+			pendingBatches.acquire(maxPendingBatches);
+			pendingBatches.release(maxPendingBatches);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for embedding batches", ex);
+		}
+		rethrowFailure();
+		long total = embedded.get();
+		double seconds = Math.max(System.nanoTime() - startedNanos, 1) / 1_000_000_000.0d;
+		logger.info("Embedded {} chunks in {} s ({} chunks/s)", total, String.format("%.2f", seconds),
+			String.format("%.1f", total / seconds));
+		return total;
+	}
+
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	private void submitBatch() {
+		List<String> batchTexts = texts;
+		List<Map<String, String>> batchMetadata = metadata;
+		resetBatch();
+		try {
+			pendingBatches.acquire();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for embedding capacity", ex);
+		}
+		try {
+			workers.execute(() -> {
+				try {
+					if (failure.get() == null) {
+						store(embed(batchTexts), batchMetadata);
+						reportProgress(embedded.addAndGet(batchTexts.size()));
+					}
+				}
+				catch (Throwable ex) {
+					failure.compareAndSet(null, ex);
+				}
+				finally {
+					pendingBatches.release();
+				}
+			});
+		}
+		catch (RuntimeException ex) {
+			pendingBatches.release();
+			throw ex;
+		}
+	}
+
+	private void store(List<List<Double>> vectors, List<Map<String, String>> batchMetadata) {
+		if (upsert) {
+			vectorStore.upsertAll(vectors, batchMetadata);
+		}
+		else {
+			vectorStore.addAll(vectors, batchMetadata);
+		}
+	}
+
+	private List<List<Double>> embed(List<String> batchTexts) {
+		if (batchSize == 1) {
+			return List.of(embeddingService.embed(batchTexts.get(0)));
+		}
+		return embeddingService.embedAll(batchTexts);
+	}
+
+	private void reportProgress(long total) {
+		long now = System.nanoTime();
+		long last = lastProgressNanos.get();
+		if (now - last >= PROGRESS_INTERVAL_NANOS && lastProgressNanos.compareAndSet(last, now)) {
+			double seconds = (now - startedNanos) / 1_000_000_000.0d;
+			logger.info("Embedding progress: {} chunks ({} chunks/s)", total, String.format("%.1f", total / seconds));
+		}
+	}
+
+	private void rethrowFailure() {
+		Throwable cause = failure.get();
+		if (cause != null) {
+			throw new IllegalStateException("Embedding pipeline failed", cause);
+		}
+	}
+
+	private void resetBatch() {
+		texts = new ArrayList<>(batchSize);
+		metadata = new ArrayList<>(batchSize);
+	}
+
+}
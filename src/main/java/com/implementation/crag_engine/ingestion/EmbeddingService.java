@@ -1,5 +1,6 @@
 package com.implementation.crag_engine.ingestion;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -8,20 +9,61 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 
+import com.implementation.crag_engine.client.OllamaClients;
+
 @Service
 public class EmbeddingService {
 
 	private static final Logger logger = LoggerFactory.getLogger(EmbeddingService.class);
 
 	private final RestClient restClient;
+	private final OllamaClients clients;
 	private final IngestionProperties properties;
+	private final EmbeddingCache cache;
 
-	public EmbeddingService(RestClient.Builder builder, IngestionProperties properties) {
-		this.restClient = builder.baseUrl(properties.getEmbedding().getBaseUrl()).build();
+	public EmbeddingService(OllamaClients clients, IngestionProperties properties, EmbeddingCache cache) {
+		this.restClient = clients.create(properties.getEmbedding().getBaseUrl());
+		this.clients = clients;
 		this.properties = properties;
+		this.cache = cache;
 	}
 
 	public List<Double> embed(String text) {
+		String model = properties.getEmbedding().getModel();
+		List<Double> cached = cache.get(model, text);
+		if (cached != null) {
+			return cached;
+		}
+		List<Double> embedding = clients.idempotent("embedding", () -> requestEmbedding(text));
+		cache.put(model, text, embedding);
+		return embedding;
+	}
+
+	public List<List<Double>> embedAll(List<String> texts) {
+		String model = properties.getEmbedding().getModel();
+		List<List<Double>> embeddings = new ArrayList<>(texts.size());
+		List<String> missing = new ArrayList<>();
+		List<Integer> missingPositions = new ArrayList<>();
+		for (String text : texts) {
+			List<Double> cached = cache.get(model, text);
+			if (cached == null) {
+				missing.add(text);
+				missingPositions.add(embeddings.size());
+			}
+			embeddings.add(cached);
+		}
+		if (missing.isEmpty()) {
+			return embeddings;
+		}
+		List<List<Double>> fetched = clients.idempotent("embedding.batch", () -> requestEmbeddings(missing));
+		for (int i = 0; i < fetched.size(); i++) {
+			embeddings.set(missingPositions.get(i), fetched.get(i));
+			cache.put(model, missing.get(i), fetched.get(i));
+		}
+		return embeddings;
+	}
+
+	private List<Double> requestEmbedding(String text) {
 		logger.debug("Requesting embedding for chunk of size {}", text.length());
 		EmbeddingRequest request = new EmbeddingRequest(properties.getEmbedding().getModel(), text);
 		EmbeddingResponse response = restClient.post()
@@ -36,10 +78,36 @@ public class EmbeddingService {
 		return response.embedding();
 	}
 
+	private List<List<Double>> requestEmbeddings(List<String> texts) {
+		logger.debug("Requesting batched embeddings for {} chunks", texts.size());
+		BatchEmbeddingRequest request = new BatchEmbeddingRequest(properties.getEmbedding().getModel(), texts);
+		BatchEmbeddingResponse response = restClient.post()
+			.uri(properties.getEmbedding().getBatchUrl())
+			.contentType(MediaType.APPLICATION_JSON)
+			.body(request)
+			.retrieve()
+			.body(BatchEmbeddingResponse.class);
+		if (response == null || response.embeddings() == null || response.embeddings().size() != texts.size()) {
+			throw new IllegalStateException("Batch embedding service returned an unexpected number of embeddings");
+		}
+		for (List<Double> embedding : response.embeddings()) {
+			if (embedding == null || embedding.isEmpty()) {
+				throw new IllegalStateException("Batch embedding service returned an empty embedding");
+			}
+		}
+		return response.embeddings();
+	}
+
 	private record EmbeddingRequest(String model, String prompt) {
 	}
 
 	private record EmbeddingResponse(List<Double> embedding) {
 	}
 
+	private record BatchEmbeddingRequest(String model, List<String> input) {
+	}
+
+	private record BatchEmbeddingResponse(List<List<Double>> embeddings) {
+	}
+
 }
@@ -0,0 +1,817 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+@Component
+@ConditionalOnProperty(prefix = "ingestion.store", name = "type", havingValue = "flat", matchIfMissing = true)
+public class FlatVectorStore implements ApproximateVectorStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(FlatVectorStore.class);
+	private static final int INITIAL_ARENA_CAPACITY = 64;
+	private static final int MAX_ARENA_CAPACITY = 8192;
+	private static final int MIN_COMPACTION_TOMBSTONES = 64;
+	private static final double RECALL_PROBE_NOISE = 0.5d;
+
+	private final Object writeLock = new Object();
+	private final double compactionThreshold;
+	private final int searchSegmentSize;
+	private final boolean quantized;
+	private final int rerankCandidates;
+	private final int trainingSampleSize;
+	private final ExecutorService compactor;
+	private volatile Snapshot snapshot = Snapshot.EMPTY;
+	// Writer-side lookup tables, guarded by writeLock; readers only ever see published snapshots.
+	private final Map<String, Integer> idsByChunk = new HashMap<>();
+	private final Map<String, Set<Integer>> idsBySource = new HashMap<>();
+	private boolean segmentIndexed = true;
+	// Set between a restore and the background pass that builds the metadata index and quantized codes for it.
+	private boolean restoreIndexPending;
+	private boolean compactionScheduled;
+
+	public FlatVectorStore(IngestionProperties properties) {
+		double threshold = properties.getStore().getCompactionThreshold();
+		if (threshold <= 0.0d || threshold > 1.0d) {
+			throw new IllegalArgumentException("ingestion.store.compaction-threshold must be in (0, 1]");
+		}
+		if (properties.getStore().getSearchSegmentSize() <= 0) {
+			throw new IllegalArgumentException("ingestion.store.search-segment-size must be positive");
+		}
+		IngestionProperties.Quantization quantization = properties.getStore().getQuantization();
+		if (quantization.getRerankCandidates() <= 0 || quantization.getTrainingSampleSize() <= 0) {
+			throw new IllegalArgumentException("ingestion.store.quantization sizes must be positive");
+		}
+		this.compactionThreshold = threshold;
+		this.searchSegmentSize = properties.getStore().getSearchSegmentSize();
+		this.quantized = quantization.isEnabled();
+		this.rerankCandidates = quantization.getRerankCandidates();
+		this.trainingSampleSize = quantization.getTrainingSampleSize();
+		this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "vector-store-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void add(List<Double> vector, Map<String, String> metadata) {
+		Objects.requireNonNull(vector, "vector must not be null");
+		Objects.requireNonNull(metadata, "metadata must not be null");
+		addAll(List.of(vector), List.of(metadata));
+	}
+
+	@Override
+	public void addAll(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		PreparedBatch batch = prepare(vectors, metadata);
+		if (batch.vectors.length == 0) {
+			return;
+		}
+		synchronized (writeLock) {
+			Snapshot current = snapshot;
+			snapshot = append(current, batch, current.tombstones, current.deleted);
+		}
+	}
+
+	@Override
+	public void upsertAll(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		PreparedBatch batch = prepare(vectors, metadata);
+		for (Map<String, String> entry : batch.metadata) {
+			if (entry.get(CHUNK_ID) == null) {
+				throw new IllegalArgumentException("metadata must contain " + CHUNK_ID + " to upsert");
+			}
+		}
+		if (batch.vectors.length == 0) {
+			return;
+		}
+		synchronized (writeLock) {
+			Snapshot current = snapshot;
+			indexSegment(current);
+			Tombstones tombstones = new Tombstones(current);
+			for (Map<String, String> entry : batch.metadata) {
+				Integer existing = idsByChunk.get(entry.get(CHUNK_ID));
+				if (existing != null) {
+					unindex(existing, current.metadata(existing));
+					tombstones.delete(existing);
+				}
+			}
+			// Replacements and additions become visible to readers in the same snapshot.
+			long[] words = tombstones.deleted == current.deleted ? current.tombstones : tombstones.words;
+			snapshot = append(current, batch, words, tombstones.deleted);
+			scheduleCompactionIfNeeded(snapshot);
+		}
+	}
+
+	@Override
+	public int deleteBySource(String sourcePath, Set<String> retainedChunkIds) {
+		synchronized (writeLock) {
+			Snapshot current = snapshot;
+			indexSegment(current);
+			Set<Integer> ids = idsBySource.get(sourcePath);
+			if (ids == null) {
+				return 0;
+			}
+			Tombstones tombstones = new Tombstones(current);
+			for (Integer id : List.copyOf(ids)) {
+				Map<String, String> metadata = current.metadata(id);
+				if (!retainedChunkIds.contains(metadata.get(CHUNK_ID))) {
+					unindex(id, metadata);
+					tombstones.delete(id);
+				}
+			}
+			int removed = tombstones.deleted - current.deleted;
+			if (removed > 0) {
+				snapshot = new Snapshot(current.segment, current.arenas, current.heapSize, current.dimension,
+						tombstones.words, tombstones.deleted, current.codes, current.index, current.columns);
+				scheduleCompactionIfNeeded(snapshot);
+			}
+			return removed;
+		}
+	}
+
+	@Override
+	public List<SearchResult> search(List<Double> queryVector, int topK) {
+		return search(queryVector, topK, null, false);
+	}
+
+	@Override
+	public List<SearchResult> search(List<Double> queryVector, int topK, MetadataFilter filter) {
+		return search(queryVector, topK, Objects.requireNonNull(filter, "filter must not be null"), true);
+	}
+
+	private List<SearchResult> search(List<Double> queryVector, int topK, MetadataFilter filter, boolean filtered) {
+		Snapshot current = snapshot;
+		if (current.size() == 0 || queryVector == null || queryVector.isEmpty() || topK <= 0) {
+			return List.of();
+		}
+		if (queryVector.size() != current.dimension) {
+			throw new IllegalArgumentException("Vector dimensions must match");
+		}
+		float[] query = VectorMath.normalize(queryVector);
+		BitSet candidates = null;
+		int limit = current.size();
+		if (filtered) {
+			// Non-matching entries are never scored; the bitmap steps the scan straight to the next match.
+			candidates = current.index != null
+					? current.index.matching(filter, current.segmentSize() + current.heapSize)
+					: matchByScan(current, filter);
+			limit = Math.min(limit, candidates.cardinality());
+			if (limit == 0) {
+				return List.of();
+			}
+		}
+		return results(current, collect(current, new float[][] { query }, topK, limit, candidates)[0]);
+	}
+
+	@Override
+	public List<List<SearchResult>> searchAll(List<List<Double>> queryVectors, int topK) {
+		Snapshot current = snapshot;
+		List<List<SearchResult>> results = new ArrayList<>(queryVectors.size());
+		List<float[]> queries = new ArrayList<>(queryVectors.size());
+		List<Integer> positions = new ArrayList<>(queryVectors.size());
+		for (List<Double> queryVector : queryVectors) {
+			results.add(List.of());
+			if (current.size() == 0 || queryVector == null || queryVector.isEmpty() || topK <= 0) {
+				continue;
+			}
+			if (queryVector.size() != current.dimension) {
+				throw new IllegalArgumentException("Vector dimensions must match");
+			}
+			queries.add(VectorMath.normalize(queryVector));
+			positions.add(results.size() - 1);
+		}
+		if (queries.isEmpty()) {
+			return results;
+		}
+		TopKCollector[] collectors = collect(current, queries.toArray(new float[0][]), topK, current.size(), null);
+		for (int i = 0; i < collectors.length; i++) {
+			results.set(positions.get(i), results(current, collectors[i]));
+		}
+		return results;
+	}
+
+	// A shortlist no larger than the re-rank set is cheaper to score at full precision directly.
+	private TopKCollector[] collect(Snapshot current, float[][] queries, int topK, int limit, BitSet candidates) {
+		return current.codes != null && limit > rerankCandidates
+				? searchQuantized(current, queries, topK, candidates)
+				: scan(current, queries, Math.min(topK, limit), candidates);
+	}
+
+	// Only used until the index of a freshly restored segment has been built.
+	private static BitSet matchByScan(Snapshot current, MetadataFilter filter) {
+		int total = current.segmentSize() + current.heapSize;
+		BitSet matches = new BitSet(total);
+		for (int id = 0; id < total; id++) {
+			if (current.isLive(id) && filter.matches(current.metadata(id))) {
+				matches.set(id);
+			}
+		}
+		return matches;
+	}
+
+	private static List<SearchResult> results(Snapshot current, TopKCollector collector) {
+		float[] scores = new float[collector.size()];
+		int[] ids = collector.drainDescending(scores);
+		List<SearchResult> results = new ArrayList<>(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			results.add(new SearchResult(current.metadata(ids[i]), scores[i]));
+		}
+		return results;
+	}
+
+	@Override
+	public int size() {
+		return snapshot.size();
+	}
+
+	@Override
+	public double estimateRecall(int sampleSize, int topK) {
+		if (sampleSize <= 0 || topK <= 0) {
+			throw new IllegalArgumentException("sampleSize and topK must be positive");
+		}
+		Snapshot current = snapshot;
+		if (current.codes == null || current.size() == 0) {
+			return 1.0d;
+		}
+		SplittableRandom sampler = new SplittableRandom(7);
+		float[] vector = new float[current.dimension];
+		int total = current.segmentSize() + current.heapSize;
+		int expected = 0;
+		int found = 0;
+		for (int sample = 0; sample < sampleSize; sample++) {
+			int id = sampler.nextInt(total);
+			while (!current.isLive(id)) {
+				id = sampler.nextInt(total);
+			}
+			current.copyVector(id, vector);
+			float[] query = perturb(vector, sampler);
+			int k = Math.min(topK, current.size());
+			float[][] queries = { query };
+			int[] exactIds = scan(current, queries, k, null)[0].drainDescending(new float[k]);
+			int[] quantizedIds = searchQuantized(current, queries, k, null)[0].drainDescending(new float[k]);
+			for (int exactId : exactIds) {
+				for (int quantizedId : quantizedIds) {
+					if (quantizedId == exactId) {
+						found++;
+						break;
+					}
+				}
+			}
+			expected += exactIds.length;
+		}
+		return expected == 0 ? 1.0d : (double) found / expected;
+	}
+
+	@Override
+	public VectorFootprint footprint() {
+		Snapshot current = snapshot;
+		long heapBytes = 0;
+		for (Arena arena : current.arenas) {
+			heapBytes += (long) arena.vectors.length * Float.BYTES;
+		}
+		if (current.codes != null) {
+			for (byte[] block : current.codes.blocks) {
+				heapBytes += block.length;
+			}
+		}
+		long mappedBytes = (long) current.segmentSize() * current.dimension * Float.BYTES;
+		return new VectorFootprint(current.size(), current.dimension, heapBytes, mappedBytes);
+	}
+
+	@Override
+	public void forEachEntry(EntryConsumer consumer) {
+		Snapshot current = snapshot;
+		VectorSegment segment = current.segment;
+		for (int id = 0; id < current.segmentSize(); id++) {
+			if (current.isLive(id)) {
+				consumer.accept(segment.vector(id), segment.metadata(id));
+			}
+		}
+		for (Arena arena : current.arenas) {
+			int count = Math.min(arena.capacity(), current.heapSize - arena.base);
+			for (int slot = 0; slot < count; slot++) {
+				if (!current.isLive(current.segmentSize() + arena.base + slot)) {
+					continue;
+				}
+				int offset = slot * current.dimension;
+				consumer.accept(Arrays.copyOfRange(arena.vectors, offset, offset + current.dimension),
+						current.columns.get(arena.base + slot));
+			}
+		}
+	}
+
+	@Override
+	public void forEachEntry(String sourcePath, EntryConsumer consumer) {
+		Snapshot current;
+		List<Integer> ids;
+		synchronized (writeLock) {
+			current = snapshot;
+			indexSegment(current);
+			ids = List.copyOf(idsBySource.getOrDefault(sourcePath, Set.of()));
+		}
+		for (int id : ids) {
+			float[] vector = new float[current.dimension];
+			current.copyVector(id, vector);
+			consumer.accept(vector, current.metadata(id));
+		}
+	}
+
+	@Override
+	public void restore(VectorSegment segment) {
+		synchronized (writeLock) {
+			if (snapshot.size() > 0) {
+				throw new IllegalStateException("Vector store must be empty before restoring a segment");
+			}
+			// Vectors stay in the mapped file and the store is searchable at once. The metadata index and quantized
+			// codes need a pass over every record, so they are built in the background and published when ready.
+			snapshot = new Snapshot(segment, new Arena[0], 0, segment.dimension(), null, 0, null, null, null);
+			segmentIndexed = false;
+			restoreIndexPending = true;
+			compactor.execute(() -> indexRestoredSegment(segment));
+		}
+	}
+
+	private void indexRestoredSegment(VectorSegment segment) {
+		long started = System.nanoTime();
+		MetadataIndex index = new MetadataIndex();
+		for (int id = 0; id < segment.size(); id++) {
+			index.add(id, segment.metadata(id));
+		}
+		Snapshot segmentOnly = new Snapshot(segment, new Arena[0], 0, segment.dimension(), null, 0, null, null, null);
+		Codes codes = quantized && segment.size() >= trainingSampleSize ? encode(segmentOnly, null) : null;
+		synchronized (writeLock) {
+			Snapshot current = snapshot;
+			// Entries appended since the restore are caught up under the lock; ids keep ascending past the segment.
+			for (int heapId = 0; heapId < current.heapSize; heapId++) {
+				index.add(current.segmentSize() + heapId, current.columns.get(heapId));
+			}
+			restoreIndexPending = false;
+			Snapshot indexed = new Snapshot(current.segment, current.arenas, current.heapSize, current.dimension,
+					current.tombstones, current.deleted, null, index, current.columns);
+			snapshot = indexed.withCodes(encode(indexed, codes));
+		}
+		logger.info("Indexed restored segment of {} embeddings in the background in {} ms", segment.size(),
+			(System.nanoTime() - started) / 1_000_000L);
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		compactor.shutdownNow();
+		VectorSegment segment = snapshot.segment;
+		if (segment != null) {
+			segment.close();
+		}
+	}
+
+	private PreparedBatch prepare(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		if (vectors.size() != metadata.size()) {
+			throw new IllegalArgumentException("vectors and metadata must have the same size");
+		}
+		// A chunk id repeated within one batch keeps only its last entry.
+		Map<Object, Integer> lastPositions = new LinkedHashMap<>();
+		for (int i = 0; i < metadata.size(); i++) {
+			Map<String, String> entry = Objects.requireNonNull(metadata.get(i), "metadata must not be null");
+			String chunkId = entry.get(CHUNK_ID);
+			lastPositions.remove(chunkId != null ? chunkId : i);
+			lastPositions.put(chunkId != null ? chunkId : i, i);
+		}
+		float[][] normalized = new float[lastPositions.size()][];
+		List<Map<String, String>> storedMetadata = new ArrayList<>(lastPositions.size());
+		int next = 0;
+		for (int i : lastPositions.values()) {
+			List<Double> vector = Objects.requireNonNull(vectors.get(i), "vector must not be null");
+			if (vector.isEmpty()) {
+				throw new IllegalArgumentException("vector must not be empty");
+			}
+			normalized[next++] = VectorMath.normalize(vector);
+			storedMetadata.add(metadata.get(i));
+		}
+		return new PreparedBatch(normalized, storedMetadata);
+	}
+
+	private Snapshot append(Snapshot current, PreparedBatch batch, long[] tombstones, int deleted) {
+		float[][] normalized = batch.vectors;
+		int dimension = current.segmentSize() + current.heapSize > 0 ? current.dimension : normalized[0].length;
+		for (float[] vector : normalized) {
+			if (vector.length != dimension) {
+				throw new IllegalArgumentException("Vector dimensions must match");
+			}
+		}
+		Arena[] arenas = current.arenas;
+		int heapSize = current.heapSize;
+		MetadataIndex metadataIndex = current.index != null || restoreIndexPending ? current.index
+				: new MetadataIndex();
+		MetadataColumns columns = current.columns != null ? current.columns : new MetadataColumns();
+		for (int i = 0; i < normalized.length; i++) {
+			arenas = reserveSlot(arenas, heapSize, dimension);
+			Arena target = arenas[arenas.length - 1];
+			int slot = heapSize - target.base;
+			System.arraycopy(normalized[i], 0, target.vectors, slot * dimension, dimension);
+			columns.add(batch.metadata.get(i));
+			index(current.segmentSize() + heapSize, batch.metadata.get(i));
+			if (metadataIndex != null) {
+				metadataIndex.add(current.segmentSize() + heapSize, batch.metadata.get(i));
+			}
+			heapSize++;
+		}
+		Snapshot next = new Snapshot(current.segment, arenas, heapSize, dimension, tombstones, deleted, null,
+				metadataIndex, columns);
+		// A restored segment gets its codes from the background pass, which also encodes whatever was added meanwhile.
+		return next.withCodes(restoreIndexPending ? null : encode(next, current.codes));
+	}
+
+	private TopKCollector[] scan(Snapshot current, float[][] queries, int topK, BitSet candidates) {
+		return SegmentedSearch.topKAll(current.segmentSize() + current.heapSize, queries.length, topK,
+				searchSegmentSize, (from, to, collectors) -> {
+					for (int id = SegmentedSearch.next(candidates, from); id >= 0 && id < to;
+							id = SegmentedSearch.next(candidates, id + 1)) {
+						if (current.isLive(id)) {
+							for (int q = 0; q < queries.length; q++) {
+								collectors[q].offer(id, current.dot(queries[q], id));
+							}
+						}
+					}
+				});
+	}
+
+	private TopKCollector[] searchQuantized(Snapshot current, float[][] queries, int topK, BitSet candidates) {
+		Codes codes = current.codes;
+		int dimension = current.dimension;
+		float[][] scaledQueries = new float[queries.length][];
+		float[] offsets = new float[queries.length];
+		for (int q = 0; q < queries.length; q++) {
+			scaledQueries[q] = codes.quantizer.scale(queries[q]);
+			offsets[q] = codes.quantizer.offset(queries[q]);
+		}
+		int candidateCount = Math.min(Math.max(topK, rerankCandidates), current.size());
+		TopKCollector[] shortlists = SegmentedSearch.topKAll(codes.count, queries.length, candidateCount,
+				searchSegmentSize, (from, to, collectors) -> {
+					for (int id = SegmentedSearch.next(candidates, from); id >= 0 && id < to;
+							id = SegmentedSearch.next(candidates, id + 1)) {
+						if (current.isLive(id)) {
+							byte[] block = codes.blocks[id / Codes.BLOCK_VECTORS];
+							int codeOffset = (id % Codes.BLOCK_VECTORS) * dimension;
+							for (int q = 0; q < queries.length; q++) {
+								collectors[q].offer(id, ScalarQuantizer.dot(scaledQueries[q], offsets[q], block,
+										codeOffset, dimension));
+							}
+						}
+					}
+				});
+		// Only the shortlists are scored against the full-precision vectors.
+		TopKCollector[] results = new TopKCollector[queries.length];
+		for (int q = 0; q < queries.length; q++) {
+			TopKCollector shortlist = shortlists[q];
+			if (shortlist.size() == 0) {
+				results[q] = shortlist;
+				continue;
+			}
+			int[] ids = shortlist.drainDescending(new float[shortlist.size()]);
+			results[q] = new TopKCollector(Math.min(topK, ids.length));
+			for (int id : ids) {
+				results[q].offer(id, current.dot(queries[q], id));
+			}
+		}
+		return results;
+	}
+
+	private Codes encode(Snapshot next, Codes codes) {
+		int total = next.segmentSize() + next.heapSize;
+		if (codes == null) {
+			if (!quantized || total < trainingSampleSize) {
+				return null;
+			}
+			codes = new Codes(ScalarQuantizer.train(sample(next, total)), new byte[0][], 0);
+			logger.info("Trained int8 quantizer on {} of {} embeddings", Math.min(total, trainingSampleSize), total);
+		}
+		return codes.encode(next, total);
+	}
+
+	private float[][] sample(Snapshot next, int total) {
+		int count = Math.min(total, trainingSampleSize);
+		float[][] samples = new float[count][next.dimension];
+		for (int i = 0; i < count; i++) {
+			next.copyVector((int) ((long) i * total / count), samples[i]);
+		}
+		return samples;
+	}
+
+	private void indexSegment(Snapshot current) {
+		if (segmentIndexed) {
+			return;
+		}
+		for (int id = 0; id < current.segmentSize(); id++) {
+			if (current.isLive(id)) {
+				index(id, current.segment.metadata(id));
+			}
+		}
+		segmentIndexed = true;
+	}
+
+	private void index(int id, Map<String, String> metadata) {
+		String chunkId = metadata.get(CHUNK_ID);
+		if (chunkId != null) {
+			idsByChunk.put(chunkId, id);
+		}
+		String sourcePath = metadata.get(SOURCE_PATH);
+		if (sourcePath != null) {
+			idsBySource.computeIfAbsent(sourcePath, key -> new HashSet<>()).add(id);
+		}
+	}
+
+	private void unindex(int id, Map<String, String> metadata) {
+		String chunkId = metadata.get(CHUNK_ID);
+		if (chunkId != null) {
+			idsByChunk.remove(chunkId, id);
+		}
+		Set<Integer> sourceIds = idsBySource.get(metadata.get(SOURCE_PATH));
+		if (sourceIds != null) {
+			sourceIds.remove(id);
+			if (sourceIds.isEmpty()) {
+				idsBySource.remove(metadata.get(SOURCE_PATH));
+			}
+		}
+	}
+
+	private void scheduleCompactionIfNeeded(Snapshot current) {
+		int heapDeleted = current.deletedIn(current.segmentSize(), current.segmentSize() + current.heapSize);
+		if (compactionScheduled || heapDeleted < MIN_COMPACTION_TOMBSTONES
+				|| heapDeleted < current.heapSize * compactionThreshold) {
+			return;
+		}
+		compactionScheduled = true;
+		compactor.execute(this::compact);
+	}
+
+	// Tombstoned segment entries stay until the next snapshot is written, since the mapped file is shared with readers.
+	private void compact() {
+		synchronized (writeLock) {
+			compactionScheduled = false;
+			Snapshot current = snapshot;
+			int segmentSize = current.segmentSize();
+			int dimension = current.dimension;
+			int[] remapped = new int[current.heapSize];
+			Arena[] arenas = new Arena[0];
+			int heapSize = 0;
+			MetadataIndex index = current.index == null ? null : current.index.truncate(segmentSize);
+			MetadataColumns columns = new MetadataColumns();
+			for (int heapId = 0; heapId < current.heapSize; heapId++) {
+				if (!current.isLive(segmentSize + heapId)) {
+					remapped[heapId] = -1;
+					continue;
+				}
+				Arena source = current.arenas[heapId / MAX_ARENA_CAPACITY];
+				int sourceSlot = heapId - source.base;
+				arenas = reserveSlot(arenas, heapSize, dimension);
+				Arena target = arenas[arenas.length - 1];
+				int slot = heapSize - target.base;
+				System.arraycopy(source.vectors, sourceSlot * dimension, target.vectors, slot * dimension, dimension);
+				Map<String, String> metadata = current.columns.get(heapId);
+				columns.add(metadata);
+				if (index != null) {
+					index.add(segmentSize + heapSize, metadata);
+				}
+				remapped[heapId] = heapSize++;
+			}
+			Tombstones segmentTombstones = new Tombstones(current).truncate(segmentSize);
+			idsByChunk.replaceAll((chunkId, id) -> remap(id, segmentSize, remapped));
+			for (Set<Integer> ids : idsBySource.values()) {
+				Set<Integer> rewritten = new HashSet<>(ids.size());
+				for (int id : ids) {
+					rewritten.add(remap(id, segmentSize, remapped));
+				}
+				ids.clear();
+				ids.addAll(rewritten);
+			}
+			int reclaimed = current.heapSize - heapSize;
+			Snapshot compacted = new Snapshot(current.segment, arenas, heapSize, dimension, segmentTombstones.words,
+					segmentTombstones.deleted, null, index, columns);
+			snapshot = compacted.withCodes(restoreIndexPending ? null : encode(compacted,
+					current.codes == null ? null : current.codes.truncate(segmentSize)));
+			logger.info("Compacted vector store: reclaimed {} deleted embeddings, {} remain", reclaimed,
+				snapshot.size());
+		}
+	}
+
+	private static int remap(int id, int segmentSize, int[] remapped) {
+		return id < segmentSize ? id : segmentSize + remapped[id - segmentSize];
+	}
+
+	private Arena[] reserveSlot(Arena[] arenas, int heapSize, int dimension) {
+		if (arenas.length == 0) {
+			return new Arena[] { new Arena(0, INITIAL_ARENA_CAPACITY, dimension) };
+		}
+		Arena last = arenas[arenas.length - 1];
+		int used = heapSize - last.base;
+		if (used < last.capacity()) {
+			return arenas;
+		}
+		Arena[] grown;
+		if (last.capacity() < MAX_ARENA_CAPACITY) {
+			// Readers keep scanning the old arena through their snapshot while the copy is published.
+			grown = Arrays.copyOf(arenas, arenas.length);
+			grown[grown.length - 1] = last.grow(Math.min(last.capacity() * 2, MAX_ARENA_CAPACITY), dimension);
+		}
+		else {
+			grown = Arrays.copyOf(arenas, arenas.length + 1);
+			grown[grown.length - 1] = new Arena(heapSize, MAX_ARENA_CAPACITY, dimension);
+		}
+		return grown;
+	}
+
+	private static final class Arena {
+
+		private final int base;
+		private final int capacity;
+		private final float[] vectors;
+
+		private Arena(int base, int capacity, int dimension) {
+			this.base = base;
+			this.capacity = capacity;
+			this.vectors = new float[capacity * dimension];
+		}
+
+		private int capacity() {
+			return capacity;
+		}
+
+		private Arena grow(int capacity, int dimension) {
+			Arena grown = new Arena(base, capacity, dimension);
+			System.arraycopy(vectors, 0, grown.vectors, 0, vectors.length);
+			return grown;
+		}
+
+	}
+
+	private static float[] perturb(float[] vector, SplittableRandom sampler) {
+		float[] query = new float[vector.length];
+		float scale = (float) (RECALL_PROBE_NOISE / Math.sqrt(vector.length));
+		for (int i = 0; i < query.length; i++) {
+			query[i] = vector[i] + (float) (sampler.nextDouble(-1.0d, 1.0d) * Math.sqrt(3.0d)) * scale;
+		}
+		return query;
+	}
+
+	private record PreparedBatch(float[][] vectors, List<Map<String, String>> metadata) {
+	}
+
+	private static final class Tombstones {
+
+		private long[] words;
+		private int deleted;
+
+		private Tombstones(Snapshot snapshot) {
+			int total = snapshot.segmentSize() + snapshot.heapSize;
+			this.words = snapshot.tombstones == null ? new long[(total + 63) >>> 6]
+					: Arrays.copyOf(snapshot.tombstones, Math.max(snapshot.tombstones.length, (total + 63) >>> 6));
+			this.deleted = snapshot.deleted;
+		}
+
+		private void delete(int id) {
+			long mask = 1L << id;
+			if ((words[id >>> 6] & mask) == 0) {
+				words[id >>> 6] |= mask;
+				deleted++;
+			}
+		}
+
+		private Tombstones truncate(int size) {
+			long[] kept = new long[(size + 63) >>> 6];
+			int count = 0;
+			for (int id = 0; id < size; id++) {
+				if ((words[id >>> 6] & (1L << id)) != 0) {
+					kept[id >>> 6] |= 1L << id;
+					count++;
+				}
+			}
+			words = count == 0 ? null : kept;
+			deleted = count;
+			return this;
+		}
+
+	}
+
+	// Codes are indexed by global id; blocks are shared between snapshots and only written past the published count.
+	private record Codes(ScalarQuantizer quantizer, byte[][] blocks, int count) {
+
+		private static final int BLOCK_VECTORS = 8192;
+
+		private Codes encode(Snapshot source, int total) {
+			int dimension = quantizer.dimension();
+			byte[][] grown = blocks;
+			float[] vector = new float[dimension];
+			for (int id = count; id < total; id++) {
+				int block = id / BLOCK_VECTORS;
+				if (block == grown.length) {
+					grown = Arrays.copyOf(grown, block + 1);
+					grown[block] = new byte[BLOCK_VECTORS * dimension];
+				}
+				source.copyVector(id, vector);
+				quantizer.encode(vector, grown[block], (id % BLOCK_VECTORS) * dimension);
+			}
+			return new Codes(quantizer, grown, total);
+		}
+
+		private Codes truncate(int size) {
+			int fullBlocks = size / BLOCK_VECTORS;
+			int partial = size % BLOCK_VECTORS == 0 ? 0 : 1;
+			byte[][] kept = Arrays.copyOf(blocks, fullBlocks + partial);
+			if (partial > 0) {
+				kept[fullBlocks] = blocks[fullBlocks].clone();
+			}
+			return new Codes(quantizer, kept, size);
+		}
+
+	}
+
+	private record Snapshot(VectorSegment segment, Arena[] arenas, int heapSize, int dimension, long[] tombstones,
+			int deleted, Codes codes, MetadataIndex index, MetadataColumns columns) {
+
+		private static final Snapshot EMPTY = new Snapshot(null, new Arena[0], 0, 0, null, 0, null, null, null);
+
+		private Snapshot withCodes(Codes codes) {
+			return new Snapshot(segment, arenas, heapSize, dimension, tombstones, deleted, codes, index, columns);
+		}
+
+		private int segmentSize() {
+			return segment == null ? 0 : segment.size();
+		}
+
+		private int size() {
+			return segmentSize() + heapSize - deleted;
+		}
+
+		private boolean isLive(int id) {
+			return tombstones == null || (id >>> 6) >= tombstones.length || (tombstones[id >>> 6] & (1L << id)) == 0;
+		}
+
+		private int deletedIn(int from, int to) {
+			if (tombstones == null || from >= to) {
+				return 0;
+			}
+			int count = 0;
+			for (int word = from >>> 6; word < Math.min(tombstones.length, (to + 63) >>> 6); word++) {
+				long bits = tombstones[word];
+				if (word == from >>> 6) {
+					bits &= -1L << from;
+				}
+				if (word == (to - 1) >>> 6 && (to & 63) != 0) {
+					bits &= -1L >>> (64 - (to & 63));
+				}
+				count += Long.bitCount(bits);
+			}
+			return count;
+		}
+
+		private Map<String, String> metadata(int id) {
+			int segmentSize = segmentSize();
+			if (id < segmentSize) {
+				return segment.metadata(id);
+			}
+			return columns.get(id - segmentSize);
+		}
+
+		private void copyVector(int id, float[] out) {
+			int segmentSize = segmentSize();
+			if (id < segmentSize) {
+				int perPage = segment.vectorsPerPage();
+				segment.page(id / perPage).get((id % perPage) * dimension, out);
+				return;
+			}
+			int heapId = id - segmentSize;
+			float[] vectors = arenas[heapId / MAX_ARENA_CAPACITY].vectors;
+			System.arraycopy(vectors, (heapId % MAX_ARENA_CAPACITY) * dimension, out, 0, dimension);
+		}
+
+		private float dot(float[] query, int id) {
+			int segmentSize = segmentSize();
+			if (id < segmentSize) {
+				int perPage = segment.vectorsPerPage();
+				return VectorMath.dot(query, segment.page(id / perPage), (id % perPage) * dimension, dimension);
+			}
+			int heapId = id - segmentSize;
+			float[] vectors = arenas[heapId / MAX_ARENA_CAPACITY].vectors;
+			return VectorMath.dot(query, vectors, (heapId % MAX_ARENA_CAPACITY) * dimension, dimension);
+		}
+
+	}
+
+}
@@ -0,0 +1,755 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+@Component
+@ConditionalOnProperty(prefix = "ingestion.store", name = "type", havingValue = "hnsw")
+public class HnswVectorStore implements ApproximateVectorStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(HnswVectorStore.class);
+	private static final int INITIAL_CAPACITY = 64;
+	private static final double RECALL_PROBE_NOISE = 0.5d;
+	private static final int MIN_FILTERED_GRAPH_MATCHES = 1024;
+	private static final int MIN_COMPACTION_TOMBSTONES = 64;
+
+	private final int maxConnections;
+	private final int maxConnectionsLevelZero;
+	private final int efConstruction;
+	private final int efSearch;
+	private final double levelMultiplier;
+	private final IngestionProperties properties;
+	private final double compactionThreshold;
+	private final ExecutorService compactor;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private float[][] vectors = new float[INITIAL_CAPACITY][];
+	private Map<String, String>[] metadata = newMetadataArray(INITIAL_CAPACITY);
+	private int[][][] links = new int[INITIAL_CAPACITY][][];
+	private int size;
+	private int dimension;
+	private int entryPoint = -1;
+	private int maxLevel = -1;
+	// Deleted nodes stay in the graph as routing points and are dropped from results and snapshots. Each one also
+	// widens the search beam and costs recall, so once they pass the compaction threshold the graph is rebuilt from
+	// the live nodes in the background and swapped in.
+	private BitSet deleted = new BitSet();
+	private int deletedCount;
+	private Map<String, Integer> idsByChunk = new HashMap<>();
+	private Map<String, Set<Integer>> idsBySource = new HashMap<>();
+	private MetadataIndex metadataIndex = new MetadataIndex();
+	private boolean compactionScheduled;
+
+	public HnswVectorStore(IngestionProperties properties) {
+		IngestionProperties.Hnsw hnsw = properties.getStore().getHnsw();
+		if (hnsw.getM() < 2) {
+			throw new IllegalArgumentException("ingestion.store.hnsw.m must be at least 2");
+		}
+		if (hnsw.getEfConstruction() <= 0 || hnsw.getEfSearch() <= 0) {
+			throw new IllegalArgumentException("ingestion.store.hnsw ef values must be positive");
+		}
+		double threshold = properties.getStore().getCompactionThreshold();
+		if (threshold <= 0.0d || threshold > 1.0d) {
+			throw new IllegalArgumentException("ingestion.store.compaction-threshold must be in (0, 1]");
+		}
+		this.maxConnections = hnsw.getM();
+		this.maxConnectionsLevelZero = hnsw.getM() * 2;
+		this.efConstruction = hnsw.getEfConstruction();
+		this.efSearch = hnsw.getEfSearch();
+		this.levelMultiplier = 1.0d / Math.log(hnsw.getM());
+		this.properties = properties;
+		this.compactionThreshold = threshold;
+		this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "vector-store-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void add(List<Double> vector, Map<String, String> metadata) {
+		Objects.requireNonNull(vector, "vector must not be null");
+		Objects.requireNonNull(metadata, "metadata must not be null");
+		addAll(List.of(vector), List.of(metadata));
+	}
+
+	@Override
+	public void addAll(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		write(vectors, metadata, false);
+	}
+
+	@Override
+	public void upsertAll(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		for (Map<String, String> entry : metadata) {
+			if (entry == null || entry.get(CHUNK_ID) == null) {
+				throw new IllegalArgumentException("metadata must contain " + CHUNK_ID + " to upsert");
+			}
+		}
+		write(vectors, metadata, true);
+	}
+
+	@Override
+	public int deleteBySource(String sourcePath, Set<String> retainedChunkIds) {
+		lock.writeLock().lock();
+		try {
+			Set<Integer> ids = idsBySource.get(sourcePath);
+			if (ids == null) {
+				return 0;
+			}
+			int removed = 0;
+			for (Integer node : List.copyOf(ids)) {
+				if (!retainedChunkIds.contains(metadata[node].get(CHUNK_ID))) {
+					delete(node);
+					removed++;
+				}
+			}
+			scheduleCompactionIfNeeded();
+			return removed;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<SearchResult> search(List<Double> queryVector, int topK) {
+		return search(queryVector, topK, null, false);
+	}
+
+	@Override
+	public List<SearchResult> search(List<Double> queryVector, int topK, MetadataFilter filter) {
+		return search(queryVector, topK, Objects.requireNonNull(filter, "filter must not be null"), true);
+	}
+
+	private List<SearchResult> search(List<Double> queryVector, int topK, MetadataFilter filter, boolean filtered) {
+		if (queryVector == null || queryVector.isEmpty() || topK <= 0) {
+			return List.of();
+		}
+		float[] query = VectorMath.normalize(queryVector);
+		lock.readLock().lock();
+		try {
+			if (size == 0) {
+				return List.of();
+			}
+			if (query.length != dimension) {
+				throw new IllegalArgumentException("Vector dimensions must match");
+			}
+			float[] scores = new float[topK];
+			int[] ids = filtered ? nearestMatching(query, topK, metadataIndex.matching(filter, size), scores)
+					: nearestLive(query, topK, scores);
+			List<SearchResult> results = new ArrayList<>(ids.length);
+			for (int i = 0; i < ids.length; i++) {
+				results.add(new SearchResult(metadata[ids[i]], scores[i]));
+			}
+			return results;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size - deletedCount;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void forEachEntry(EntryConsumer consumer) {
+		lock.readLock().lock();
+		try {
+			for (int node = 0; node < size; node++) {
+				if (!deleted.get(node)) {
+					consumer.accept(vectors[node], metadata[node]);
+				}
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void forEachEntry(String sourcePath, EntryConsumer consumer) {
+		lock.readLock().lock();
+		try {
+			for (Integer node : idsBySource.getOrDefault(sourcePath, Set.of())) {
+				consumer.accept(vectors[node], metadata[node]);
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// The snapshot holds vectors and metadata but not the graph, so restoring re-inserts every entry; the store stays
+	// searchable while the graph grows, as with any other ingestion.
+	@Override
+	public void restore(VectorSegment segment) {
+		long started = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			if (size - deletedCount > 0) {
+				throw new IllegalStateException("Vector store must be empty before restoring a segment");
+			}
+			dimension = segment.dimension();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		for (int id = 0; id < segment.size(); id++) {
+			float[] vector = segment.vector(id);
+			Map<String, String> storedMetadata = segment.metadata(id);
+			lock.writeLock().lock();
+			try {
+				insert(vector, storedMetadata);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+		logger.info("Rebuilt HNSW graph over {} restored embeddings in {} ms; the graph is not part of the snapshot, "
+				+ "so this store restores at the cost of a full build", segment.size(),
+			(System.nanoTime() - started) / 1_000_000L);
+	}
+
+	@Override
+	public double estimateRecall(int sampleSize, int topK) {
+		if (sampleSize <= 0 || topK <= 0) {
+			throw new IllegalArgumentException("sampleSize and topK must be positive");
+		}
+		lock.readLock().lock();
+		try {
+			if (size == 0) {
+				return 1.0d;
+			}
+			SplittableRandom sampler = new SplittableRandom(7);
+			int expected = 0;
+			int found = 0;
+			for (int sample = 0; sample < sampleSize; sample++) {
+				float[] query = perturb(vectors[sampler.nextInt(size)], sampler);
+				int k = Math.min(topK, size);
+				TopKCollector exact = new TopKCollector(k);
+				for (int node = 0; node < size; node++) {
+					if (!deleted.get(node)) {
+						exact.offer(node, dot(query, vectors[node]));
+					}
+				}
+				int[] exactIds = exact.drainDescending(new float[exact.size()]);
+				int[] approximateIds = nearestLive(query, k, new float[k]);
+				for (int id : exactIds) {
+					for (int approximateId : approximateIds) {
+						if (approximateId == id) {
+							found++;
+							break;
+						}
+					}
+				}
+				expected += exactIds.length;
+			}
+			return expected == 0 ? 1.0d : (double) found / expected;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public VectorFootprint footprint() {
+		lock.readLock().lock();
+		try {
+			// Deleted nodes keep their vectors for routing, so they still count against the heap.
+			return new VectorFootprint(size - deletedCount, dimension, (long) size * dimension * Float.BYTES, 0);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void write(List<List<Double>> vectors, List<Map<String, String>> metadata, boolean replace) {
+		if (vectors.size() != metadata.size()) {
+			throw new IllegalArgumentException("vectors and metadata must have the same size");
+		}
+		float[][] normalized = new float[vectors.size()][];
+		List<Map<String, String>> storedMetadata = new ArrayList<>(metadata.size());
+		for (int i = 0; i < normalized.length; i++) {
+			List<Double> vector = Objects.requireNonNull(vectors.get(i), "vector must not be null");
+			if (vector.isEmpty()) {
+				throw new IllegalArgumentException("vector must not be empty");
+			}
+			Objects.requireNonNull(metadata.get(i), "metadata must not be null");
+			normalized[i] = VectorMath.normalize(vector);
+			storedMetadata.add(Collections.unmodifiableMap(new HashMap<>(metadata.get(i))));
+		}
+		for (float[] vector : normalized) {
+			if (vector.length != normalized[0].length) {
+				throw new IllegalArgumentException("Vector dimensions must match");
+			}
+		}
+		// Searches share the lock, so it is taken per entry: a query waits behind one graph insertion, not a batch.
+		for (int i = 0; i < normalized.length; i++) {
+			lock.writeLock().lock();
+			try {
+				if (size > 0 && normalized[i].length != dimension) {
+					throw new IllegalArgumentException("Vector dimensions must match");
+				}
+				dimension = normalized[i].length;
+				Integer existing = replace ? idsByChunk.get(storedMetadata.get(i).get(CHUNK_ID)) : null;
+				if (existing != null) {
+					delete(existing);
+					scheduleCompactionIfNeeded();
+				}
+				insert(normalized[i], storedMetadata.get(i));
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		compactor.shutdownNow();
+	}
+
+	private void scheduleCompactionIfNeeded() {
+		if (compactionScheduled || deletedCount < MIN_COMPACTION_TOMBSTONES
+				|| deletedCount < size * compactionThreshold) {
+			return;
+		}
+		compactionScheduled = true;
+		compactor.execute(this::compact);
+	}
+
+	// The live nodes are copied under the read lock and inserted into a fresh graph without holding any lock, so
+	// searches and ingestion carry on against the old graph meanwhile. The write lock is only taken to replay what
+	// changed during the rebuild and to swap the new graph in.
+	private void compact() {
+		long started = System.nanoTime();
+		HnswVectorStore rebuilt = new HnswVectorStore(properties);
+		int rebuiltFrom;
+		BitSet deletedBefore;
+		lock.readLock().lock();
+		try {
+			rebuiltFrom = size;
+			deletedBefore = (BitSet) deleted.clone();
+			rebuilt.dimension = dimension;
+			for (int node = 0; node < size; node++) {
+				if (!deleted.get(node)) {
+					rebuilt.insert(vectors[node], metadata[node]);
+				}
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		lock.writeLock().lock();
+		try {
+			int dropped = deletedBefore.cardinality();
+			int rebuiltNode = 0;
+			for (int node = 0; node < rebuiltFrom; node++) {
+				if (deletedBefore.get(node)) {
+					continue;
+				}
+				if (deleted.get(node)) {
+					rebuilt.delete(rebuiltNode);
+				}
+				rebuiltNode++;
+			}
+			for (int node = rebuiltFrom; node < size; node++) {
+				if (!deleted.get(node)) {
+					rebuilt.insert(vectors[node], metadata[node]);
+				}
+			}
+			vectors = rebuilt.vectors;
+			metadata = rebuilt.metadata;
+			links = rebuilt.links;
+			size = rebuilt.size;
+			entryPoint = rebuilt.entryPoint;
+			maxLevel = rebuilt.maxLevel;
+			deleted = rebuilt.deleted;
+			deletedCount = rebuilt.deletedCount;
+			idsByChunk = rebuilt.idsByChunk;
+			idsBySource = rebuilt.idsBySource;
+			metadataIndex = rebuilt.metadataIndex;
+			compactionScheduled = false;
+			logger.info("Compacted HNSW graph: dropped {} deleted nodes, {} remain, in {} ms", dropped,
+				size - deletedCount, (System.nanoTime() - started) / 1_000_000L);
+			scheduleCompactionIfNeeded();
+		}
+		finally {
+			lock.writeLock().unlock();
+			rebuilt.close();
+		}
+	}
+
+	private void delete(int node) {
+		if (deleted.get(node)) {
+			return;
+		}
+		deleted.set(node);
+		deletedCount++;
+		Map<String, String> nodeMetadata = metadata[node];
+		idsByChunk.remove(nodeMetadata.get(CHUNK_ID), node);
+		Set<Integer> sourceIds = idsBySource.get(nodeMetadata.get(SOURCE_PATH));
+		if (sourceIds != null) {
+			sourceIds.remove(node);
+			if (sourceIds.isEmpty()) {
+				idsBySource.remove(nodeMetadata.get(SOURCE_PATH));
+			}
+		}
+	}
+
+	private int[] nearestLive(float[] query, int topK, float[] scoresOut) {
+		ScoreHeap nearest = nearestNodes(query, topK + Math.min(deletedCount, efSearch));
+		float[] scores = new float[nearest.size()];
+		int[] ids = drainBestFirst(nearest, scores);
+		int count = 0;
+		for (int i = 0; i < ids.length && count < topK; i++) {
+			if (!deleted.get(ids[i])) {
+				ids[count] = ids[i];
+				scoresOut[count++] = scores[i];
+			}
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	private int[] nearestMatching(float[] query, int topK, BitSet matches, float[] scoresOut) {
+		matches.andNot(deleted);
+		int count = matches.cardinality();
+		if (count == 0) {
+			return new int[0];
+		}
+		// A restrictive filter is scored exhaustively; the graph would have to be walked far past its matches.
+		if (count <= Math.max(MIN_FILTERED_GRAPH_MATCHES, size / 10)) {
+			TopKCollector collector = new TopKCollector(Math.min(topK, count));
+			for (int node = matches.nextSetBit(0); node >= 0; node = matches.nextSetBit(node + 1)) {
+				collector.offer(node, dot(query, vectors[node]));
+			}
+			return collector.drainDescending(scoresOut);
+		}
+		// Otherwise the beam is widened by the inverse selectivity, which is at most ten.
+		int ef = (int) Math.min(size, (long) (topK + Math.min(deletedCount, efSearch)) * size / count);
+		ScoreHeap nearest = nearestNodes(query, ef);
+		float[] scores = new float[nearest.size()];
+		int[] ids = drainBestFirst(nearest, scores);
+		int found = 0;
+		for (int i = 0; i < ids.length && found < topK; i++) {
+			if (matches.get(ids[i])) {
+				ids[found] = ids[i];
+				scoresOut[found++] = scores[i];
+			}
+		}
+		return Arrays.copyOf(ids, found);
+	}
+
+	private ScoreHeap nearestNodes(float[] query, int topK) {
+		int candidate = entryPoint;
+		for (int level = maxLevel; level > 0; level--) {
+			candidate = greedyClosest(query, candidate, level);
+		}
+		ScoreHeap nearest = searchLayer(query, candidate, Math.max(efSearch, topK), 0);
+		while (nearest.size() > topK) {
+			nearest.pop();
+		}
+		return nearest;
+	}
+
+	private void insert(float[] vector, Map<String, String> storedMetadata) {
+		ensureCapacity(size + 1);
+		int node = size;
+		int level = randomLevel();
+		vectors[node] = vector;
+		metadata[node] = storedMetadata;
+		metadataIndex.add(node, storedMetadata);
+		if (storedMetadata.get(CHUNK_ID) != null) {
+			idsByChunk.put(storedMetadata.get(CHUNK_ID), node);
+		}
+		if (storedMetadata.get(SOURCE_PATH) != null) {
+			idsBySource.computeIfAbsent(storedMetadata.get(SOURCE_PATH), key -> new HashSet<>()).add(node);
+		}
+		links[node] = new int[level + 1][];
+		for (int l = 0; l <= level; l++) {
+			links[node][l] = new int[1 + connectionLimit(l)];
+		}
+		size++;
+		if (entryPoint < 0) {
+			entryPoint = node;
+			maxLevel = level;
+			return;
+		}
+		int candidate = entryPoint;
+		for (int l = maxLevel; l > level; l--) {
+			candidate = greedyClosest(vector, candidate, l);
+		}
+		for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+			ScoreHeap found = searchLayer(vector, candidate, efConstruction, l);
+			int[] candidates = drainBestFirst(found, new float[found.size()]);
+			candidate = candidates[0];
+			int[] neighbors = selectNeighbors(vector, candidates, maxConnections);
+			int[] own = links[node][l];
+			own[0] = neighbors.length;
+			System.arraycopy(neighbors, 0, own, 1, neighbors.length);
+			for (int neighbor : neighbors) {
+				connect(neighbor, node, l);
+			}
+		}
+		if (level > maxLevel) {
+			entryPoint = node;
+			maxLevel = level;
+		}
+	}
+
+	private void connect(int from, int to, int level) {
+		int[] adjacency = links[from][level];
+		int limit = connectionLimit(level);
+		if (adjacency[0] < limit) {
+			adjacency[++adjacency[0]] = to;
+			return;
+		}
+		float[] base = vectors[from];
+		int[] candidates = new int[adjacency[0] + 1];
+		System.arraycopy(adjacency, 1, candidates, 0, adjacency[0]);
+		candidates[candidates.length - 1] = to;
+		sortBySimilarity(base, candidates);
+		int[] kept = selectNeighbors(base, candidates, limit);
+		adjacency[0] = kept.length;
+		System.arraycopy(kept, 0, adjacency, 1, kept.length);
+	}
+
+	// Heuristic from the HNSW paper: keep a candidate only if it is closer to the base
+	// than to every neighbour already kept, which preserves links across clusters.
+	private int[] selectNeighbors(float[] base, int[] candidatesBestFirst, int limit) {
+		int[] selected = new int[Math.min(limit, candidatesBestFirst.length)];
+		int count = 0;
+		for (int candidate : candidatesBestFirst) {
+			if (count == selected.length) {
+				break;
+			}
+			float toBase = dot(base, vectors[candidate]);
+			boolean diverse = true;
+			for (int i = 0; i < count; i++) {
+				if (dot(vectors[candidate], vectors[selected[i]]) > toBase) {
+					diverse = false;
+					break;
+				}
+			}
+			if (diverse) {
+				selected[count++] = candidate;
+			}
+		}
+		return count == selected.length ? selected : Arrays.copyOf(selected, count);
+	}
+
+	private int greedyClosest(float[] query, int start, int level) {
+		int current = start;
+		float currentScore = dot(query, vectors[current]);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			int[] adjacency = links[current][level];
+			for (int i = 1; i <= adjacency[0]; i++) {
+				float score = dot(query, vectors[adjacency[i]]);
+				if (score > currentScore) {
+					currentScore = score;
+					current = adjacency[i];
+					improved = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	private ScoreHeap searchLayer(float[] query, int entry, int ef, int level) {
+		BitSet visited = new BitSet(size);
+		ScoreHeap candidates = new ScoreHeap(true);
+		ScoreHeap nearest = new ScoreHeap(false);
+		float entryScore = dot(query, vectors[entry]);
+		visited.set(entry);
+		candidates.push(entry, entryScore);
+		nearest.push(entry, entryScore);
+		while (candidates.size() > 0) {
+			int current = candidates.peekId();
+			float currentScore = candidates.peekScore();
+			candidates.pop();
+			if (nearest.size() >= ef && currentScore < nearest.peekScore()) {
+				break;
+			}
+			int[] adjacency = links[current][level];
+			for (int i = 1; i <= adjacency[0]; i++) {
+				int neighbor = adjacency[i];
+				if (visited.get(neighbor)) {
+					continue;
+				}
+				visited.set(neighbor);
+				float score = dot(query, vectors[neighbor]);
+				if (nearest.size() < ef || score > nearest.peekScore()) {
+					candidates.push(neighbor, score);
+					nearest.push(neighbor, score);
+					if (nearest.size() > ef) {
+						nearest.pop();
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	private int[] drainBestFirst(ScoreHeap nearest, float[] scoresOut) {
+		int[] ids = new int[nearest.size()];
+		for (int i = ids.length - 1; i >= 0; i--) {
+			ids[i] = nearest.peekId();
+			scoresOut[i] = nearest.peekScore();
+			nearest.pop();
+		}
+		return ids;
+	}
+
+	private void sortBySimilarity(float[] base, int[] ids) {
+		ScoreHeap heap = new ScoreHeap(false);
+		for (int id : ids) {
+			heap.push(id, dot(base, vectors[id]));
+		}
+		int[] sorted = drainBestFirst(heap, new float[ids.length]);
+		System.arraycopy(sorted, 0, ids, 0, ids.length);
+	}
+
+	private int connectionLimit(int level) {
+		return level == 0 ? maxConnectionsLevelZero : maxConnections;
+	}
+
+	private int randomLevel() {
+		return (int) (-Math.log(1.0d - random.nextDouble()) * levelMultiplier);
+	}
+
+	private void ensureCapacity(int required) {
+		if (required <= vectors.length) {
+			return;
+		}
+		int capacity = Math.max(required, vectors.length * 2);
+		vectors = Arrays.copyOf(vectors, capacity);
+		metadata = Arrays.copyOf(metadata, capacity);
+		links = Arrays.copyOf(links, capacity);
+	}
+
+	// Stored vectors would trivially find themselves, so probe with a jittered copy instead.
+	private static float[] perturb(float[] vector, SplittableRandom sampler) {
+		float[] query = new float[vector.length];
+		float scale = (float) (RECALL_PROBE_NOISE / Math.sqrt(vector.length));
+		for (int i = 0; i < query.length; i++) {
+			query[i] = vector[i] + (float) (sampler.nextDouble(-1.0d, 1.0d) * Math.sqrt(3.0d)) * scale;
+		}
+		return query;
+	}
+
+	private static float dot(float[] left, float[] right) {
+		return VectorMath.dot(left, right, 0, left.length);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, String>[] newMetadataArray(int capacity) {
+		return new Map[capacity];
+	}
+
+	private static final class ScoreHeap {
+
+		private final boolean maxHeap;
+		private int[] ids = new int[16];
+		private float[] scores = new float[16];
+		private int size;
+
+		private ScoreHeap(boolean maxHeap) {
+			this.maxHeap = maxHeap;
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private int peekId() {
+			return ids[0];
+		}
+
+		private float peekScore() {
+			return scores[0];
+		}
+
+		private void push(int id, float score) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				scores = Arrays.copyOf(scores, size * 2);
+			}
+			int index = size++;
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (!before(score, scores[parent])) {
+					break;
+				}
+				ids[index] = ids[parent];
+				scores[index] = scores[parent];
+				index = parent;
+			}
+			ids[index] = id;
+			scores[index] = score;
+		}
+
+		private void pop() {
+			size--;
+			if (size == 0) {
+				return;
+			}
+			int id = ids[size];
+			float score = scores[size];
+			int index = 0;
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && before(scores[child + 1], scores[child])) {
+					child++;
+				}
+				if (!before(scores[child], score)) {
+					break;
+				}
+				ids[index] = ids[child];
+				scores[index] = scores[child];
+				index = child;
+			}
+			ids[index] = id;
+			scores[index] = score;
+		}
+
+		private boolean before(float left, float right) {
+			return maxHeap ? left > right : left < right;
+		}
+
+	}
+
+}
@@ -1,19 +1,37 @@
 package com.implementation.crag_engine.ingestion;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Set;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(prefix = "ingestion.store", name = "type", havingValue = "in-memory")
 public class InMemoryVectorStore implements VectorStore {
 
-	private final List<StoredVector> vectors = new ArrayList<>();
+	private static final int MIN_RECLAIMABLE_ROWS = 1024;
+
+	private List<StoredVector> vectors = new ArrayList<>();
+	// Removed entries leave their rows behind until the columns are rewritten.
+	private MetadataColumns columns = new MetadataColumns();
+	private final int searchSegmentSize;
+	private int dimension;
+	// Positions shift when entries are removed, so the index is dropped then and rebuilt by the next filtered search.
+	private MetadataIndex metadataIndex;
+
+	public InMemoryVectorStore(IngestionProperties properties) {
+		if (properties.getStore().getSearchSegmentSize() <= 0) {
+			throw new IllegalArgumentException("ingestion.store.search-segment-size must be positive");
+		}
+		this.searchSegmentSize = properties.getStore().getSearchSegmentSize();
+	}
 
 	@Override
 	public synchronized void add(List<Double> vector, Map<String, String> metadata) {
@@ -22,42 +40,127 @@ public class InMemoryVectorStore implements VectorStore {
 			throw new IllegalArgumentException("vector must not be empty");
 		}
 		Objects.requireNonNull(metadata, "metadata must not be null");
-		vectors.add(new StoredVector(new ArrayList<>(vector), new HashMap<>(metadata)));
+		if (!vectors.isEmpty() && vector.size() != dimension) {
+			throw new IllegalArgumentException("Vector dimensions must match");
+		}
+		// Vectors are kept normalized so that cosine similarity is a single dot product.
+		vectors.add(new StoredVector(VectorMath.normalize(vector), columns.add(metadata)));
+		dimension = vector.size();
+		if (metadataIndex != null) {
+			metadataIndex.add(vectors.size() - 1, metadata);
+		}
+	}
+
+	@Override
+	public synchronized void upsertAll(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		if (vectors.size() != metadata.size()) {
+			throw new IllegalArgumentException("vectors and metadata must have the same size");
+		}
+		for (Map<String, String> entry : metadata) {
+			if (Objects.requireNonNull(entry, "metadata must not be null").get(CHUNK_ID) == null) {
+				throw new IllegalArgumentException("metadata must contain " + CHUNK_ID + " to upsert");
+			}
+		}
+		// One pass over the store removes every replaced entry; within the batch the last entry for a chunk wins.
+		Map<String, Integer> lastByChunk = new HashMap<>();
+		for (int i = 0; i < metadata.size(); i++) {
+			lastByChunk.put(metadata.get(i).get(CHUNK_ID), i);
+		}
+		if (this.vectors.removeIf(vector -> lastByChunk.containsKey(columns.get(vector.row, CHUNK_ID)))) {
+			metadataIndex = null;
+		}
+		for (int i = 0; i < vectors.size(); i++) {
+			if (lastByChunk.get(metadata.get(i).get(CHUNK_ID)) == i) {
+				add(vectors.get(i), metadata.get(i));
+			}
+		}
+		reclaimRows();
+	}
+
+	@Override
+	public synchronized int deleteBySource(String sourcePath, Set<String> retainedChunkIds) {
+		int before = vectors.size();
+		vectors.removeIf(vector -> sourcePath.equals(columns.get(vector.row, SOURCE_PATH))
+				&& !retainedChunkIds.contains(columns.get(vector.row, CHUNK_ID)));
+		if (vectors.size() != before) {
+			metadataIndex = null;
+			reclaimRows();
+		}
+		return before - vectors.size();
 	}
 
 	@Override
 	public synchronized List<SearchResult> search(List<Double> queryVector, int topK) {
+		return searchCandidates(queryVector, topK, null);
+	}
+
+	@Override
+	public synchronized List<SearchResult> search(List<Double> queryVector, int topK, MetadataFilter filter) {
+		Objects.requireNonNull(filter, "filter must not be null");
+		if (metadataIndex == null) {
+			metadataIndex = new MetadataIndex();
+			for (int id = 0; id < vectors.size(); id++) {
+				metadataIndex.add(id, columns.get(vectors.get(id).row));
+			}
+		}
+		BitSet candidates = metadataIndex.matching(filter, vectors.size());
+		return candidates.isEmpty() ? List.of() : searchCandidates(queryVector, topK, candidates);
+	}
+
+	private List<SearchResult> searchCandidates(List<Double> queryVector, int topK, BitSet candidates) {
 		if (vectors.isEmpty() || queryVector == null || queryVector.isEmpty() || topK <= 0) {
 			return List.of();
 		}
-		return vectors.stream()
-			.map(vector -> new SearchResult(vector.metadata, cosineSimilarity(queryVector, vector.vector)))
-			.sorted(Comparator.comparingDouble(SearchResult::score).reversed())
-			.limit(topK)
-			.collect(Collectors.toList());
+		if (queryVector.size() != dimension) {
+			throw new IllegalArgumentException("Vector dimensions must match");
+		}
+		float[] query = VectorMath.normalize(queryVector);
+		// Workers read the list while this thread holds the monitor, so no writer can interleave; metadata is only
+		// materialized for the winners.
+		int limit = candidates == null ? vectors.size() : candidates.cardinality();
+		TopKCollector collector = SegmentedSearch.topK(vectors.size(), Math.min(topK, limit), searchSegmentSize,
+				(from, to, segment) -> {
+					for (int id = SegmentedSearch.next(candidates, from); id >= 0 && id < to;
+							id = SegmentedSearch.next(candidates, id + 1)) {
+						segment.offer(id, VectorMath.dot(query, vectors.get(id).vector, 0, dimension));
+					}
+				});
+		float[] scores = new float[collector.size()];
+		int[] ids = collector.drainDescending(scores);
+		List<SearchResult> results = new ArrayList<>(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			results.add(new SearchResult(columns.get(vectors.get(ids[i]).row), scores[i]));
+		}
+		return results;
 	}
 
-	private double cosineSimilarity(List<Double> left, List<Double> right) {
-		if (left.size() != right.size()) {
-			throw new IllegalArgumentException("Vector dimensions must match");
+	@Override
+	public synchronized int size() {
+		return vectors.size();
+	}
+
+	@Override
+	public synchronized void forEachEntry(EntryConsumer consumer) {
+		for (StoredVector vector : vectors) {
+			consumer.accept(Arrays.copyOf(vector.vector, vector.vector.length), columns.get(vector.row));
 		}
-		double dotProduct = 0;
-		double leftMagnitude = 0;
-		double rightMagnitude = 0;
-		for (int i = 0; i < left.size(); i++) {
-			double l = left.get(i);
-			double r = right.get(i);
-			dotProduct += l * r;
-			leftMagnitude += l * l;
-			rightMagnitude += r * r;
+	}
+
+	private void reclaimRows() {
+		int garbage = columns.size() - vectors.size();
+		if (garbage < MIN_RECLAIMABLE_ROWS || garbage < vectors.size()) {
+			return;
 		}
-		if (leftMagnitude == 0 || rightMagnitude == 0) {
-			return 0;
+		MetadataColumns rewritten = new MetadataColumns();
+		List<StoredVector> renumbered = new ArrayList<>(vectors.size());
+		for (StoredVector vector : vectors) {
+			renumbered.add(new StoredVector(vector.vector, rewritten.add(columns.get(vector.row))));
 		}
-		return dotProduct / (Math.sqrt(leftMagnitude) * Math.sqrt(rightMagnitude));
+		columns = rewritten;
+		vectors = renumbered;
 	}
 
-	private record StoredVector(List<Double> vector, Map<String, String> metadata) {
+	private record StoredVector(float[] vector, int row) {
 	}
 
 }
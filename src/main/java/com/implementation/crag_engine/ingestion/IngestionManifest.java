@@ -0,0 +1,77 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+final class IngestionManifest {
+
+	private final Map<String, Entry> entries;
+
+	private IngestionManifest(Map<String, Entry> entries) {
+		this.entries = entries;
+	}
+
+	static IngestionManifest empty() {
+		return new IngestionManifest(new TreeMap<>());
+	}
+
+	static IngestionManifest load(Path path) throws IOException {
+		if (!Files.isRegularFile(path)) {
+			return empty();
+		}
+		Properties properties = new Properties();
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			properties.load(inputStream);
+		}
+		Map<String, Entry> entries = new TreeMap<>();
+		for (String source : properties.stringPropertyNames()) {
+			String[] parts = properties.getProperty(source).split(",", 3);
+			if (parts.length != 3) {
+				throw new IOException("Malformed manifest entry for " + source + " in " + path);
+			}
+			entries.put(source, new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+		}
+		return new IngestionManifest(entries);
+	}
+
+	Entry get(String source) {
+		return entries.get(source);
+	}
+
+	Iterable<String> sources() {
+		return entries.keySet();
+	}
+
+	void put(String source, Entry entry) {
+		entries.put(source, entry);
+	}
+
+	void save(Path path) throws IOException {
+		Properties properties = new Properties();
+		entries.forEach((source, entry) -> properties.setProperty(source,
+				entry.size() + "," + entry.lastModified() + "," + entry.contentHash()));
+		Path parent = path.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream outputStream = Files.newOutputStream(temp)) {
+				properties.store(outputStream, "Documents represented in the vector store snapshot");
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	record Entry(long size, long lastModified, String contentHash) {
+	}
+
+}
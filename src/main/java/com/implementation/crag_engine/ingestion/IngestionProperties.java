@@ -6,10 +6,15 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class IngestionProperties {
 
 	private boolean autoRun = true;
+	private Mode mode = Mode.FULL;
 	private String sourcePath = "documents/sample.txt";
 	private int chunkSize = 500;
 	private int chunkOverlap = 100;
 	private final Embedding embedding = new Embedding();
+	private final Store store = new Store();
+	private final Snapshot snapshot = new Snapshot();
+	private final Pipeline pipeline = new Pipeline();
+	private final Lexical lexical = new Lexical();
 
 	public boolean isAutoRun() {
 		return autoRun;
@@ -19,6 +24,14 @@ public class IngestionProperties {
 		this.autoRun = autoRun;
 	}
 
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
 	public String getSourcePath() {
 		return sourcePath;
 	}
@@ -47,10 +60,28 @@ public class IngestionProperties {
 		return embedding;
 	}
 
+	public Store getStore() {
+		return store;
+	}
+
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public Pipeline getPipeline() {
+		return pipeline;
+	}
+
+	public Lexical getLexical() {
+		return lexical;
+	}
+
 	public static class Embedding {
 
 		private String baseUrl = "http://localhost:11434/api/embeddings";
+		private String batchUrl = "http://localhost:11434/api/embed";
 		private String model = "nomic-embed-text";
+		private final Cache cache = new Cache();
 
 		public String getBaseUrl() {
 			return baseUrl;
@@ -60,6 +91,14 @@ public class IngestionProperties {
 			this.baseUrl = baseUrl;
 		}
 
+		public String getBatchUrl() {
+			return batchUrl;
+		}
+
+		public void setBatchUrl(String batchUrl) {
+			this.batchUrl = batchUrl;
+		}
+
 		public String getModel() {
 			return model;
 		}
@@ -68,5 +107,293 @@ public class IngestionProperties {
 			this.model = model;
 		}
 
+		public Cache getCache() {
+			return cache;
+		}
+
+	}
+
+	public static class Cache {
+
+		private boolean enabled = true;
+		private int maxEntries = 10000;
+		private String diskPath = "";
+		private long diskMaxBytes = 256L * 1024 * 1024;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		public void setMaxEntries(int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+		public String getDiskPath() {
+			return diskPath;
+		}
+
+		public void setDiskPath(String diskPath) {
+			this.diskPath = diskPath;
+		}
+
+		public long getDiskMaxBytes() {
+			return diskMaxBytes;
+		}
+
+		public void setDiskMaxBytes(long diskMaxBytes) {
+			this.diskMaxBytes = diskMaxBytes;
+		}
+
+	}
+
+	public static class Store {
+
+		private String type = "flat";
+		private int recallSampleSize = 20;
+		private int recallTopK = 10;
+		private double compactionThreshold = 0.2;
+		private int searchSegmentSize = 16384;
+		private final Hnsw hnsw = new Hnsw();
+		private final Quantization quantization = new Quantization();
+
+		public String getType() {
+			return type;
+		}
+
+		public void setType(String type) {
+			this.type = type;
+		}
+
+		public int getRecallSampleSize() {
+			return recallSampleSize;
+		}
+
+		public void setRecallSampleSize(int recallSampleSize) {
+			this.recallSampleSize = recallSampleSize;
+		}
+
+		public int getRecallTopK() {
+			return recallTopK;
+		}
+
+		public void setRecallTopK(int recallTopK) {
+			this.recallTopK = recallTopK;
+		}
+
+		public double getCompactionThreshold() {
+			return compactionThreshold;
+		}
+
+		public void setCompactionThreshold(double compactionThreshold) {
+			this.compactionThreshold = compactionThreshold;
+		}
+
+		public int getSearchSegmentSize() {
+			return searchSegmentSize;
+		}
+
+		public void setSearchSegmentSize(int searchSegmentSize) {
+			this.searchSegmentSize = searchSegmentSize;
+		}
+
+		public Hnsw getHnsw() {
+			return hnsw;
+		}
+
+		public Quantization getQuantization() {
+			return quantization;
+		}
+
+	}
+
+	public static class Hnsw {
+
+		private int m = 16;
+		private int efConstruction = 200;
+		private int efSearch = 64;
+
+		public int getM() {
+			return m;
+		}
+
+		public void setM(int m) {
+			this.m = m;
+		}
+
+		public int getEfConstruction() {
+			return efConstruction;
+		}
+
+		public void setEfConstruction(int efConstruction) {
+			this.efConstruction = efConstruction;
+		}
+
+		public int getEfSearch() {
+			return efSearch;
+		}
+
+		public void setEfSearch(int efSearch) {
+			this.efSearch = efSearch;
+		}
+
+	}
+
+	public static class Quantization {
+
+		private boolean enabled;
+		private int rerankCandidates = 100;
+		private int trainingSampleSize = 4096;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getRerankCandidates() {
+			return rerankCandidates;
+		}
+
+		public void setRerankCandidates(int rerankCandidates) {
+			this.rerankCandidates = rerankCandidates;
+		}
+
+		public int getTrainingSampleSize() {
+			return trainingSampleSize;
+		}
+
+		public void setTrainingSampleSize(int trainingSampleSize) {
+			this.trainingSampleSize = trainingSampleSize;
+		}
+
+	}
+
+	public static class Snapshot {
+
+		private boolean enabled = true;
+		private String path = "data/vector-store.seg";
+		private String manifestPath = "data/ingestion-manifest.properties";
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public String getManifestPath() {
+			return manifestPath;
+		}
+
+		public void setManifestPath(String manifestPath) {
+			this.manifestPath = manifestPath;
+		}
+
+	}
+
+	public static class Pipeline {
+
+		private int batchSize = 32;
+		private int parallelism = 4;
+		private int maxPendingBatches = 8;
+		private int readerParallelism = 2;
+		private int chunkQueueCapacity = 256;
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public int getMaxPendingBatches() {
+			return maxPendingBatches;
+		}
+
+		public void setMaxPendingBatches(int maxPendingBatches) {
+			this.maxPendingBatches = maxPendingBatches;
+		}
+
+		public int getReaderParallelism() {
+			return readerParallelism;
+		}
+
+		public void setReaderParallelism(int readerParallelism) {
+			this.readerParallelism = readerParallelism;
+		}
+
+		public int getChunkQueueCapacity() {
+			return chunkQueueCapacity;
+		}
+
+		public void setChunkQueueCapacity(int chunkQueueCapacity) {
+			this.chunkQueueCapacity = chunkQueueCapacity;
+		}
+
+	}
+
+	public static class Lexical {
+
+		private boolean enabled = true;
+		private double k1 = 1.2;
+		private double b = 0.75;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public double getK1() {
+			return k1;
+		}
+
+		public void setK1(double k1) {
+			this.k1 = k1;
+		}
+
+		public double getB() {
+			return b;
+		}
+
+		public void setB(double b) {
+			this.b = b;
+		}
+
+	}
+
+	public enum Mode {
+		FULL,
+		INCREMENTAL
 	}
 }
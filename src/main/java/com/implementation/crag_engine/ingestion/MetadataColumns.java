@@ -0,0 +1,180 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Column-wise metadata: one dictionary-encoded column per key, with chunk text and chunk ids packed into UTF-8 pages.
+// Rows are appended by a single writer; readers may materialize any row that was published to them, concurrently with
+// appends.
+final class MetadataColumns {
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int TEXT_PAGE_SIZE = 1 << 20;
+	private static final int ABSENT = -1;
+	// Values of these keys are unique to their row, so a dictionary entry would share nothing; repeated values such as
+	// the source path stay dictionary-encoded.
+	private static final List<String> PACKED_KEYS = List.of(VectorStore.TEXT, VectorStore.CHUNK_ID);
+
+	// Writer-side lookups; readers only go through the volatile arrays, which are replaced when they grow.
+	private final Map<String, Integer> keyIds = new HashMap<>();
+	private final Map<String, Integer> valueIds = new HashMap<>();
+	private volatile String[] keys = new String[0];
+	private volatile int[][] columns = new int[0][];
+	private volatile String[] values = new String[INITIAL_CAPACITY];
+	private volatile byte[][] textPages = new byte[0][];
+	private volatile long[][] packedRefs = new long[PACKED_KEYS.size()][INITIAL_CAPACITY];
+	private volatile int[][] packedLengths = new int[PACKED_KEYS.size()][INITIAL_CAPACITY];
+	private int capacity = INITIAL_CAPACITY;
+	private int rowCount;
+	private int valueCount;
+	private int pageOffset = TEXT_PAGE_SIZE;
+
+	int add(Map<String, String> metadata) {
+		int row = rowCount;
+		ensureCapacity(row + 1);
+		for (int[] column : columns) {
+			column[row] = ABSENT;
+		}
+		for (int[] lengths : packedLengths) {
+			lengths[row] = ABSENT;
+		}
+		metadata.forEach((key, value) -> {
+			if (value == null) {
+				return;
+			}
+			int packed = PACKED_KEYS.indexOf(key);
+			if (packed >= 0) {
+				appendPacked(packed, row, value);
+			}
+			else {
+				int column = keyId(key);
+				columns[column][row] = valueId(value);
+			}
+		});
+		rowCount++;
+		return row;
+	}
+
+	int size() {
+		return rowCount;
+	}
+
+	Map<String, String> get(int row) {
+		// Columns are read before keys, so every column seen here has its key.
+		int[][] currentColumns = columns;
+		String[] currentKeys = keys;
+		String[] currentValues = values;
+		Map<String, String> metadata = new HashMap<>();
+		for (int key = 0; key < currentColumns.length; key++) {
+			int value = currentColumns[key][row];
+			if (value != ABSENT) {
+				metadata.put(currentKeys[key], currentValues[value]);
+			}
+		}
+		for (int packed = 0; packed < PACKED_KEYS.size(); packed++) {
+			String value = packed(packed, row);
+			if (value != null) {
+				metadata.put(PACKED_KEYS.get(packed), value);
+			}
+		}
+		return Collections.unmodifiableMap(metadata);
+	}
+
+	String get(int row, String key) {
+		int packed = PACKED_KEYS.indexOf(key);
+		if (packed >= 0) {
+			return packed(packed, row);
+		}
+		int[][] currentColumns = columns;
+		String[] currentKeys = keys;
+		for (int column = 0; column < currentColumns.length; column++) {
+			if (currentKeys[column].equals(key)) {
+				int value = currentColumns[column][row];
+				return value == ABSENT ? null : values[value];
+			}
+		}
+		return null;
+	}
+
+	private String packed(int packed, int row) {
+		int length = packedLengths[packed][row];
+		if (length == ABSENT) {
+			return null;
+		}
+		long ref = packedRefs[packed][row];
+		return new String(textPages[(int) (ref >>> 32)], (int) ref, length, StandardCharsets.UTF_8);
+	}
+
+	private void appendPacked(int packed, int row, String value) {
+		byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+		byte[][] pages = textPages;
+		if (pageOffset + encoded.length > TEXT_PAGE_SIZE || encoded.length > TEXT_PAGE_SIZE) {
+			// Oversized texts get a page of their own; the partly filled page is left behind.
+			pages = Arrays.copyOf(pages, pages.length + 1);
+			pages[pages.length - 1] = new byte[Math.max(TEXT_PAGE_SIZE, encoded.length)];
+			textPages = pages;
+			pageOffset = 0;
+		}
+		System.arraycopy(encoded, 0, pages[pages.length - 1], pageOffset, encoded.length);
+		packedRefs[packed][row] = ((long) (pages.length - 1) << 32) | pageOffset;
+		packedLengths[packed][row] = encoded.length;
+		pageOffset += encoded.length;
+	}
+
+	private int keyId(String key) {
+		Integer existing = keyIds.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		int id = keys.length;
+		int[] column = new int[capacity];
+		Arrays.fill(column, ABSENT);
+		String[] grownKeys = Arrays.copyOf(keys, id + 1);
+		grownKeys[id] = key;
+		keys = grownKeys;
+		int[][] grownColumns = Arrays.copyOf(columns, id + 1);
+		grownColumns[id] = column;
+		columns = grownColumns;
+		keyIds.put(key, id);
+		return id;
+	}
+
+	private int valueId(String value) {
+		Integer existing = valueIds.get(value);
+		if (existing != null) {
+			return existing;
+		}
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, valueCount * 2);
+		}
+		values[valueCount] = value;
+		valueIds.put(value, valueCount);
+		return valueCount++;
+	}
+
+	private void ensureCapacity(int required) {
+		if (required <= capacity) {
+			return;
+		}
+		int grown = Math.max(required, capacity * 2);
+		int[][] grownColumns = new int[columns.length][];
+		for (int key = 0; key < grownColumns.length; key++) {
+			grownColumns[key] = Arrays.copyOf(columns[key], grown);
+		}
+		columns = grownColumns;
+		long[][] grownRefs = new long[PACKED_KEYS.size()][];
+		int[][] grownLengths = new int[PACKED_KEYS.size()][];
+		for (int packed = 0; packed < grownRefs.length; packed++) {
+			grownRefs[packed] = Arrays.copyOf(packedRefs[packed], grown);
+			grownLengths[packed] = Arrays.copyOf(packedLengths[packed], grown);
+		}
+		packedRefs = grownRefs;
+		packedLengths = grownLengths;
+		capacity = grown;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+public sealed interface MetadataFilter permits MetadataFilter.In, MetadataFilter.Prefix, MetadataFilter.And {
+
+	static MetadataFilter eq(String key, String value) {
+		return new In(key, Set.of(Objects.requireNonNull(value, "value must not be null")));
+	}
+
+	static MetadataFilter in(String key, Collection<String> values) {
+		return new In(key, Set.copyOf(values));
+	}
+
+	static MetadataFilter prefix(String key, String prefix) {
+		return new Prefix(key, prefix);
+	}
+
+	static MetadataFilter and(MetadataFilter... filters) {
+		return new And(List.of(filters));
+	}
+
+	boolean matches(Map<String, String> metadata);
+
+	record In(String key, Set<String> values) implements MetadataFilter {
+
+		public In {
+			requireFilterableKey(key);
+			if (values.isEmpty()) {
+				throw new IllegalArgumentException("values must not be empty");
+			}
+		}
+
+		@Override
+		public boolean matches(Map<String, String> metadata) {
+			String value = metadata.get(key);
+			return value != null && values.contains(value);
+		}
+
+	}
+
+	record Prefix(String key, String prefix) implements MetadataFilter {
+
+		public Prefix {
+			requireFilterableKey(key);
+			Objects.requireNonNull(prefix, "prefix must not be null");
+		}
+
+		@Override
+		public boolean matches(Map<String, String> metadata) {
+			String value = metadata.get(key);
+			return value != null && value.startsWith(prefix);
+		}
+
+	}
+
+	record And(List<MetadataFilter> filters) implements MetadataFilter {
+
+		public And {
+			if (filters.isEmpty()) {
+				throw new IllegalArgumentException("filters must not be empty");
+			}
+		}
+
+		@Override
+		public boolean matches(Map<String, String> metadata) {
+			for (MetadataFilter filter : filters) {
+				if (!filter.matches(metadata)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	private static void requireFilterableKey(String key) {
+		Objects.requireNonNull(key, "key must not be null");
+		if (!MetadataIndex.isIndexed(key)) {
+			throw new IllegalArgumentException("metadata key '" + key + "' cannot be filtered on");
+		}
+	}
+
+}
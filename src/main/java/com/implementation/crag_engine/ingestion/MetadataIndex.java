@@ -0,0 +1,127 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Inverted postings per metadata key and value. Ids must be added in ascending order by a single writer; readers may
+// search concurrently and only see ids below the size of the snapshot they are scanning.
+final class MetadataIndex {
+
+	private final Map<String, ConcurrentSkipListMap<String, Postings>> keys = new ConcurrentHashMap<>();
+
+	static boolean isIndexed(String key) {
+		return !VectorStore.TEXT.equals(key);
+	}
+
+	void add(int id, Map<String, String> metadata) {
+		metadata.forEach((key, value) -> {
+			if (isIndexed(key)) {
+				keys.computeIfAbsent(key, ignored -> new ConcurrentSkipListMap<>())
+					.computeIfAbsent(value, ignored -> new Postings())
+					.add(id);
+			}
+		});
+	}
+
+	// Keeps the postings below size; used when the entries above it are renumbered.
+	MetadataIndex truncate(int size) {
+		MetadataIndex truncated = new MetadataIndex();
+		keys.forEach((key, values) -> values.forEach((value, postings) -> {
+			Postings kept = postings.truncate(size);
+			if (kept != null) {
+				truncated.keys.computeIfAbsent(key, ignored -> new ConcurrentSkipListMap<>()).put(value, kept);
+			}
+		}));
+		return truncated;
+	}
+
+	BitSet matching(MetadataFilter filter, int total) {
+		BitSet matches = new BitSet(total);
+		if (filter instanceof MetadataFilter.In in) {
+			NavigableMap<String, Postings> values = keys.get(in.key());
+			if (values != null) {
+				for (String value : in.values()) {
+					Postings postings = values.get(value);
+					if (postings != null) {
+						postings.collect(total, matches);
+					}
+				}
+			}
+		}
+		else if (filter instanceof MetadataFilter.Prefix prefix) {
+			NavigableMap<String, Postings> values = keys.get(prefix.key());
+			if (values != null) {
+				String last = prefix.prefix() + Character.MAX_VALUE;
+				for (Postings postings : values.subMap(prefix.prefix(), true, last, true).values()) {
+					postings.collect(total, matches);
+				}
+			}
+		}
+		else if (filter instanceof MetadataFilter.And and) {
+			matches = null;
+			for (MetadataFilter clause : and.filters()) {
+				BitSet clauseMatches = matching(clause, total);
+				if (matches == null) {
+					matches = clauseMatches;
+				}
+				else {
+					matches.and(clauseMatches);
+				}
+				if (matches.isEmpty()) {
+					break;
+				}
+			}
+		}
+		return matches;
+	}
+
+	private static final class Postings {
+
+		private volatile Published published = new Published(new int[4], 0);
+
+		private void add(int id) {
+			Published current = published;
+			int[] ids = current.ids;
+			if (current.size == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+			// Slots past the published size are invisible to readers, so the array can be filled in place.
+			ids[current.size] = id;
+			published = new Published(ids, current.size + 1);
+		}
+
+		private Postings truncate(int size) {
+			Published current = published;
+			int count = 0;
+			while (count < current.size && current.ids[count] < size) {
+				count++;
+			}
+			if (count == 0) {
+				return null;
+			}
+			Postings truncated = new Postings();
+			truncated.published = new Published(Arrays.copyOf(current.ids, count), count);
+			return truncated;
+		}
+
+		private void collect(int total, BitSet out) {
+			Published current = published;
+			for (int i = 0; i < current.size; i++) {
+				int id = current.ids[i];
+				if (id >= total) {
+					return;
+				}
+				out.set(id);
+			}
+		}
+
+		private record Published(int[] ids, int size) {
+		}
+
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.nio.FloatBuffer;
+
+final class ScalarDistanceKernel implements DistanceKernel {
+
+	@Override
+	public float dot(float[] query, float[] vectors, int offset, int dimension) {
+		float sum = 0;
+		for (int i = 0; i < dimension; i++) {
+			sum += query[i] * vectors[offset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public float dot(float[] query, FloatBuffer vectors, int offset, int dimension) {
+		float sum = 0;
+		for (int i = 0; i < dimension; i++) {
+			sum += query[i] * vectors.get(offset + i);
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.Arrays;
+
+final class ScalarQuantizer {
+
+	private static final int LEVELS = 255;
+
+	private final float[] minimums;
+	private final float[] steps;
+
+	private ScalarQuantizer(float[] minimums, float[] steps) {
+		this.minimums = minimums;
+		this.steps = steps;
+	}
+
+	static ScalarQuantizer train(float[][] samples) {
+		if (samples.length == 0) {
+			throw new IllegalArgumentException("samples must not be empty");
+		}
+		int dimension = samples[0].length;
+		float[] minimums = new float[dimension];
+		float[] maximums = new float[dimension];
+		Arrays.fill(minimums, Float.POSITIVE_INFINITY);
+		Arrays.fill(maximums, Float.NEGATIVE_INFINITY);
+		for (float[] sample : samples) {
+			for (int i = 0; i < dimension; i++) {
+				minimums[i] = Math.min(minimums[i], sample[i]);
+				maximums[i] = Math.max(maximums[i], sample[i]);
+			}
+		}
+		float[] steps = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			steps[i] = (maximums[i] - minimums[i]) / LEVELS;
+		}
+		return new ScalarQuantizer(minimums, steps);
+	}
+
+	int dimension() {
+		return minimums.length;
+	}
+
+	// Values outside the trained range are clamped to its ends.
+	void encode(float[] vector, byte[] codes, int offset) {
+		for (int i = 0; i < minimums.length; i++) {
+			int code = steps[i] == 0 ? 0 : Math.round((vector[i] - minimums[i]) / steps[i]);
+			codes[offset + i] = (byte) Math.max(0, Math.min(LEVELS, code));
+		}
+	}
+
+	// q . v is approximated by q . min + sum(q[i] * step[i] * code[i]), so the per-query terms are folded up front.
+	float[] scale(float[] query) {
+		float[] scaled = new float[query.length];
+		for (int i = 0; i < query.length; i++) {
+			scaled[i] = query[i] * steps[i];
+		}
+		return scaled;
+	}
+
+	float offset(float[] query) {
+		return VectorMath.dot(query, minimums, 0, minimums.length);
+	}
+
+	static float dot(float[] scaledQuery, float offset, byte[] codes, int codeOffset, int dimension) {
+		float sum = offset;
+		for (int i = 0; i < dimension; i++) {
+			sum += scaledQuery[i] * (codes[codeOffset + i] & 0xFF);
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+final class SegmentedSearch {
+
+	private SegmentedSearch() {
+	}
+
+	// Ranges of at most segmentSize ids are scored on ForkJoin workers, each into its own heap, and merged pairwise.
+	static TopKCollector topK(int total, int topK, int segmentSize, RangeScorer scorer) {
+		return topKAll(total, 1, topK, segmentSize, (from, to, collectors) -> scorer.score(from, to, collectors[0]))[0];
+	}
+
+	// Scores several queries in one pass with a heap per query, so each vector is read once for the whole batch.
+	static TopKCollector[] topKAll(int total, int queries, int topK, int segmentSize, BatchRangeScorer scorer) {
+		if (total <= segmentSize) {
+			TopKCollector[] collectors = collectors(queries, topK);
+			scorer.score(0, total, collectors);
+			return collectors;
+		}
+		return ForkJoinPool.commonPool().invoke(new SegmentTask(0, total, queries, topK, segmentSize, scorer));
+	}
+
+	// Steps through a candidate set, or through every id when there is none.
+	static int next(BitSet candidates, int id) {
+		return candidates == null ? id : candidates.nextSetBit(id);
+	}
+
+	@FunctionalInterface
+	interface RangeScorer {
+
+		void score(int from, int to, TopKCollector collector);
+
+	}
+
+	@FunctionalInterface
+	interface BatchRangeScorer {
+
+		void score(int from, int to, TopKCollector[] collectors);
+
+	}
+
+	private static TopKCollector[] collectors(int queries, int topK) {
+		TopKCollector[] collectors = new TopKCollector[queries];
+		for (int i = 0; i < queries; i++) {
+			collectors[i] = new TopKCollector(topK);
+		}
+		return collectors;
+	}
+
+	private static final class SegmentTask extends RecursiveTask<TopKCollector[]> {
+
+		private final int from;
+		private final int to;
+		private final int queries;
+		private final int topK;
+		private final int segmentSize;
+		private final BatchRangeScorer scorer;
+
+		private SegmentTask(int from, int to, int queries, int topK, int segmentSize, BatchRangeScorer scorer) {
+			this.from = from;
+			this.to = to;
+			this.queries = queries;
+			this.topK = topK;
+			this.segmentSize = segmentSize;
+			this.scorer = scorer;
+		}
+
+		@Override
+		protected TopKCollector[] compute() {
+			if (to - from <= segmentSize) {
+				TopKCollector[] collectors = collectors(queries, topK);
+				scorer.score(from, to, collectors);
+				return collectors;
+			}
+			int middle = (from + to) >>> 1;
+			SegmentTask left = new SegmentTask(from, middle, queries, topK, segmentSize, scorer);
+			left.fork();
+			TopKCollector[] collectors = new SegmentTask(middle, to, queries, topK, segmentSize, scorer).compute();
+			TopKCollector[] leftCollectors = left.join();
+			for (int i = 0; i < queries; i++) {
+				collectors[i].merge(leftCollectors[i]);
+			}
+			return collectors;
+		}
+
+	}
+
+}
@@ -1,7 +1,10 @@
 package com.implementation.crag_engine.ingestion;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -13,12 +16,7 @@ public class TextChunker {
 		if (!StringUtils.hasText(text)) {
 			return List.of();
 		}
-		if (chunkSize <= 0) {
-			throw new IllegalArgumentException("chunkSize must be positive");
-		}
-		if (overlap < 0 || overlap >= chunkSize) {
-			throw new IllegalArgumentException("overlap must be in range [0, chunkSize)");
-		}
+		validate(chunkSize, overlap);
 
 		List<String> chunks = new ArrayList<>();
 		int start = 0;
@@ -33,4 +31,46 @@ public class TextChunker {
 		return chunks;
 	}
 
+	public int chunk(Reader reader, int chunkSize, int overlap, Consumer<String> sink) throws IOException {
+		validate(chunkSize, overlap);
+		// Only one window of characters is held at a time; the overlap is carried into the next window.
+		char[] window = new char[chunkSize];
+		int filled = 0;
+		int unemitted = 0;
+		int emitted = 0;
+		int read;
+		while ((read = reader.read(window, filled, chunkSize - filled)) >= 0) {
+			filled += read;
+			unemitted += read;
+			if (filled == chunkSize) {
+				emitted += emit(window, filled, sink);
+				System.arraycopy(window, chunkSize - overlap, window, 0, overlap);
+				filled = overlap;
+				unemitted = 0;
+			}
+		}
+		if (unemitted > 0) {
+			emitted += emit(window, filled, sink);
+		}
+		return emitted;
+	}
+
+	private static int emit(char[] window, int length, Consumer<String> sink) {
+		String chunk = new String(window, 0, length);
+		if (!StringUtils.hasText(chunk)) {
+			return 0;
+		}
+		sink.accept(chunk);
+		return 1;
+	}
+
+	private static void validate(int chunkSize, int overlap) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		if (overlap < 0 || overlap >= chunkSize) {
+			throw new IllegalArgumentException("overlap must be in range [0, chunkSize)");
+		}
+	}
+
 }
@@ -0,0 +1,99 @@
+package com.implementation.crag_engine.ingestion;
+
+final class TopKCollector {
+
+	private final int capacity;
+	private final int[] ids;
+	private final float[] scores;
+	private int size;
+
+	TopKCollector(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.ids = new int[capacity];
+		this.scores = new float[capacity];
+	}
+
+	void offer(int id, float score) {
+		if (size < capacity) {
+			ids[size] = id;
+			scores[size] = score;
+			siftUp(size++);
+		}
+		else if (score > scores[0]) {
+			ids[0] = id;
+			scores[0] = score;
+			siftDown(0);
+		}
+	}
+
+	void merge(TopKCollector other) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.ids[i], other.scores[i]);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	float minScore() {
+		return size < capacity ? Float.NEGATIVE_INFINITY : scores[0];
+	}
+
+	int[] drainDescending(float[] scoresOut) {
+		int count = size;
+		int[] orderedIds = new int[count];
+		for (int i = count - 1; i >= 0; i--) {
+			orderedIds[i] = ids[0];
+			scoresOut[i] = scores[0];
+			size--;
+			ids[0] = ids[size];
+			scores[0] = scores[size];
+			siftDown(0);
+		}
+		return orderedIds;
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (scores[parent] <= scores[index]) {
+				return;
+			}
+			swap(parent, index);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int left = 2 * index + 1;
+			if (left >= size) {
+				return;
+			}
+			int smallest = left;
+			int right = left + 1;
+			if (right < size && scores[right] < scores[left]) {
+				smallest = right;
+			}
+			if (scores[index] <= scores[smallest]) {
+				return;
+			}
+			swap(index, smallest);
+			index = smallest;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		float score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+
+}
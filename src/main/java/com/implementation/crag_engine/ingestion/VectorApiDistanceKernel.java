@@ -0,0 +1,48 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.nio.FloatBuffer;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only loaded when the JVM was started with --add-modules jdk.incubator.vector; see DistanceKernels.
+final class VectorApiDistanceKernel implements DistanceKernel {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[0]);
+
+	@Override
+	public float dot(float[] query, float[] vectors, int offset, int dimension) {
+		FloatVector sum = FloatVector.zero(SPECIES);
+		int bound = SPECIES.loopBound(dimension);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector left = FloatVector.fromArray(SPECIES, query, i);
+			FloatVector right = FloatVector.fromArray(SPECIES, vectors, offset + i);
+			sum = left.fma(right, sum);
+		}
+		float result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < dimension; i++) {
+			result += query[i] * vectors[offset + i];
+		}
+		return result;
+	}
+
+	@Override
+	public float dot(float[] query, FloatBuffer vectors, int offset, int dimension) {
+		if (vectors.hasArray()) {
+			return dot(query, vectors.array(), vectors.arrayOffset() + offset, dimension);
+		}
+		// Mapped pages are copied a vector at a time; the bulk get is a plain memory copy.
+		float[] buffer = scratch.get();
+		if (buffer.length < dimension) {
+			buffer = new float[dimension];
+			scratch.set(buffer);
+		}
+		vectors.get(offset, buffer, 0, dimension);
+		return dot(query, buffer, 0, dimension);
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+final class VectorMath {
+
+	private static final DistanceKernel KERNEL = DistanceKernels.select();
+
+	private VectorMath() {
+	}
+
+	static float[] normalize(List<Double> vector) {
+		float[] normalized = new float[vector.size()];
+		double magnitude = 0;
+		for (int i = 0; i < normalized.length; i++) {
+			double value = vector.get(i);
+			normalized[i] = (float) value;
+			magnitude += value * value;
+		}
+		if (magnitude == 0) {
+			return normalized;
+		}
+		float inverse = (float) (1.0d / Math.sqrt(magnitude));
+		for (int i = 0; i < normalized.length; i++) {
+			normalized[i] *= inverse;
+		}
+		return normalized;
+	}
+
+	static float dot(float[] query, float[] vectors, int offset, int dimension) {
+		return KERNEL.dot(query, vectors, offset, dimension);
+	}
+
+	static float dot(float[] query, FloatBuffer vectors, int offset, int dimension) {
+		return KERNEL.dot(query, vectors, offset, dimension);
+	}
+
+}
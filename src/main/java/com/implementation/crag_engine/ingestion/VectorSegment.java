@@ -0,0 +1,320 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class VectorSegment implements Closeable {
+
+	private static final int MAGIC = 0x43524753;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 128;
+	private static final int FINGERPRINT_SIZE = 32;
+	private static final long MAX_PAGE_BYTES = Integer.MAX_VALUE;
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final int dimension;
+	private final int size;
+	private final byte[] fingerprint;
+	private final int vectorsPerPage;
+	private final FloatBuffer[] pages;
+	private final LongBuffer metadataIndex;
+	private final long metadataOffset;
+
+	private VectorSegment(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IOException("Unsupported vector segment format");
+		}
+		this.dimension = header.getInt();
+		this.size = header.getInt();
+		long vectorsOffset = header.getLong();
+		long indexOffset = header.getLong();
+		this.metadataOffset = header.getLong();
+		this.fingerprint = new byte[FINGERPRINT_SIZE];
+		header.get(fingerprint);
+		if (dimension <= 0 || size < 0 || metadataOffset > channel.size()) {
+			throw new IOException("Corrupt vector segment header");
+		}
+		long vectorBytes = (long) dimension * Float.BYTES;
+		this.vectorsPerPage = (int) Math.max(1, MAX_PAGE_BYTES / vectorBytes);
+		int pageCount = (int) ((size + (long) vectorsPerPage - 1) / vectorsPerPage);
+		this.pages = new FloatBuffer[pageCount];
+		for (int page = 0; page < pageCount; page++) {
+			long first = (long) page * vectorsPerPage;
+			long count = Math.min(vectorsPerPage, size - first);
+			pages[page] = channel
+				.map(FileChannel.MapMode.READ_ONLY, vectorsOffset + first * vectorBytes, count * vectorBytes)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.asFloatBuffer();
+		}
+		this.metadataIndex = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (size + 1L) * Long.BYTES)
+			.order(ByteOrder.LITTLE_ENDIAN)
+			.asLongBuffer();
+	}
+
+	public static VectorSegment open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new VectorSegment(channel);
+		}
+		catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	public static void write(Path path, byte[] fingerprint, VectorStore store) throws IOException {
+		if (fingerprint.length != FINGERPRINT_SIZE) {
+			throw new IllegalArgumentException("fingerprint must be " + FINGERPRINT_SIZE + " bytes");
+		}
+		Path parent = path.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path target = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+		Path metadataSpill = Files.createTempFile(parent, path.getFileName().toString(), ".meta");
+		try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE);
+				FileChannel metadataOut = FileChannel.open(metadataSpill, StandardOpenOption.WRITE,
+						StandardOpenOption.READ)) {
+			SegmentWriter writer = new SegmentWriter(out, metadataOut);
+			out.position(HEADER_SIZE);
+			store.forEachEntry(writer::append);
+			writer.flush();
+			long indexOffset = out.position();
+			writer.writeIndex();
+			long metadataOffset = out.position();
+			long transferred = 0;
+			while (transferred < metadataOut.size()) {
+				transferred += metadataOut.transferTo(transferred, metadataOut.size() - transferred, out);
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC)
+				.putInt(VERSION)
+				.putInt(Math.max(writer.dimension, 1))
+				.putInt(writer.count)
+				.putLong(HEADER_SIZE)
+				.putLong(indexOffset)
+				.putLong(metadataOffset)
+				.put(fingerprint);
+			header.position(HEADER_SIZE).flip();
+			writeFully(out, header, 0);
+			out.force(true);
+		}
+		catch (IOException | RuntimeException ex) {
+			Files.deleteIfExists(target);
+			throw ex;
+		}
+		finally {
+			Files.deleteIfExists(metadataSpill);
+		}
+		Files.move(target, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int dimension() {
+		return dimension;
+	}
+
+	public boolean matches(byte[] expectedFingerprint) {
+		return Arrays.equals(fingerprint, expectedFingerprint);
+	}
+
+	int vectorsPerPage() {
+		return vectorsPerPage;
+	}
+
+	int pageCount() {
+		return pages.length;
+	}
+
+	FloatBuffer page(int page) {
+		return pages[page];
+	}
+
+	public float[] vector(int id) {
+		float[] vector = new float[dimension];
+		pages[id / vectorsPerPage].get((id % vectorsPerPage) * dimension, vector);
+		return vector;
+	}
+
+	public Map<String, String> metadata(int id) {
+		long start = metadataIndex.get(id);
+		int length = (int) (metadataIndex.get(id + 1) - start);
+		ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			readFully(channel, record, metadataOffset + start);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read metadata for vector " + id, ex);
+		}
+		record.flip();
+		int pairs = record.getInt();
+		Map<String, String> metadata = new HashMap<>(pairs * 2);
+		for (int i = 0; i < pairs; i++) {
+			metadata.put(readString(record), readString(record));
+		}
+		return Collections.unmodifiableMap(metadata);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new IOException("Unexpected end of vector segment");
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private static final class SegmentWriter {
+
+		private final FileChannel vectorsOut;
+		private final FileChannel metadataOut;
+		private final ByteBuffer vectorBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		private final ByteBuffer metadataBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		private final List<long[]> offsetBlocks = new ArrayList<>();
+		private long metadataPosition;
+		private int dimension;
+		private int count;
+
+		private SegmentWriter(FileChannel vectorsOut, FileChannel metadataOut) {
+			this.vectorsOut = vectorsOut;
+			this.metadataOut = metadataOut;
+		}
+
+		private void append(float[] vector, Map<String, String> metadata) {
+			try {
+				if (count == 0) {
+					dimension = vector.length;
+				}
+				else if (vector.length != dimension) {
+					throw new IllegalStateException("Vector dimensions must match");
+				}
+				for (float value : vector) {
+					if (vectorBuffer.remaining() < Float.BYTES) {
+						drain(vectorBuffer, vectorsOut);
+					}
+					vectorBuffer.putFloat(value);
+				}
+				recordOffset(count, metadataPosition);
+				byte[] record = encode(metadata);
+				if (record.length > metadataBuffer.remaining()) {
+					drain(metadataBuffer, metadataOut);
+				}
+				if (record.length > metadataBuffer.capacity()) {
+					ByteBuffer wrapped = ByteBuffer.wrap(record);
+					while (wrapped.hasRemaining()) {
+						metadataOut.write(wrapped);
+					}
+				}
+				else {
+					metadataBuffer.put(record);
+				}
+				metadataPosition += record.length;
+				count++;
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Failed to write vector segment", ex);
+			}
+		}
+
+		private void flush() throws IOException {
+			drain(vectorBuffer, vectorsOut);
+			drain(metadataBuffer, metadataOut);
+			recordOffset(count, metadataPosition);
+		}
+
+		private void writeIndex() throws IOException {
+			for (int i = 0; i <= count; i++) {
+				if (vectorBuffer.remaining() < Long.BYTES) {
+					drain(vectorBuffer, vectorsOut);
+				}
+				vectorBuffer.putLong(offsetBlocks.get(i >>> 16)[i & 0xFFFF]);
+			}
+			drain(vectorBuffer, vectorsOut);
+		}
+
+		private void recordOffset(int index, long offset) {
+			if ((index >>> 16) == offsetBlocks.size()) {
+				offsetBlocks.add(new long[1 << 16]);
+			}
+			offsetBlocks.get(index >>> 16)[index & 0xFFFF] = offset;
+		}
+
+		private static byte[] encode(Map<String, String> metadata) {
+			List<byte[]> parts = new ArrayList<>(metadata.size() * 2);
+			int length = Integer.BYTES;
+			for (Map.Entry<String, String> entry : metadata.entrySet()) {
+				byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				byte[] value = entry.getValue() == null ? null : entry.getValue().getBytes(StandardCharsets.UTF_8);
+				parts.add(key);
+				parts.add(value);
+				length += 2 * Integer.BYTES + key.length + (value == null ? 0 : value.length);
+			}
+			ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+			record.putInt(metadata.size());
+			for (byte[] part : parts) {
+				if (part == null) {
+					record.putInt(-1);
+				}
+				else {
+					record.putInt(part.length).put(part);
+				}
+			}
+			return record.array();
+		}
+
+		private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+	}
+
+}
@@ -1,15 +1,85 @@
 package com.implementation.crag_engine.ingestion;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface VectorStore {
 
+	String CHUNK_ID = "chunkId";
+	String SOURCE_PATH = "sourcePath";
+	String TEXT = "text";
+
 	void add(List<Double> vector, Map<String, String> metadata);
 
+	default void addAll(List<List<Double>> vectors, List<Map<String, String>> metadata) {
+		if (vectors.size() != metadata.size()) {
+			throw new IllegalArgumentException("vectors and metadata must have the same size");
+		}
+		for (int i = 0; i < vectors.size(); i++) {
+			add(vectors.get(i), metadata.get(i));
+		}
+	}
+
+	// Entries are matched on their CHUNK_ID metadata; a matching entry is replaced, anything else is added.
+	void upsertAll(List<List<Double>> vectors, List<Map<String, String>> metadata);
+
+	int deleteBySource(String sourcePath, Set<String> retainedChunkIds);
+
+	default int deleteBySource(String sourcePath) {
+		return deleteBySource(sourcePath, Set.of());
+	}
+
 	List<SearchResult> search(List<Double> queryVector, int topK);
 
+	// One result list per query, in query order; stores that can score a batch in a single pass override this.
+	default List<List<SearchResult>> searchAll(List<List<Double>> queryVectors, int topK) {
+		List<List<SearchResult>> results = new ArrayList<>(queryVectors.size());
+		for (List<Double> queryVector : queryVectors) {
+			results.add(search(queryVector, topK));
+		}
+		return results;
+	}
+
+	// Only entries whose metadata matches the filter are scored.
+	List<SearchResult> search(List<Double> queryVector, int topK, MetadataFilter filter);
+
+	int size();
+
+	void forEachEntry(EntryConsumer consumer);
+
+	// Visits the entries of one source; stores that index their sources override the full scan.
+	default void forEachEntry(String sourcePath, EntryConsumer consumer) {
+		forEachEntry((vector, metadata) -> {
+			if (sourcePath.equals(metadata.get(SOURCE_PATH))) {
+				consumer.accept(vector, metadata);
+			}
+		});
+	}
+
+	default void restore(VectorSegment segment) {
+		if (size() > 0) {
+			throw new IllegalStateException("Vector store must be empty before restoring a segment");
+		}
+		for (int id = 0; id < segment.size(); id++) {
+			float[] vector = segment.vector(id);
+			List<Double> boxed = new ArrayList<>(vector.length);
+			for (float value : vector) {
+				boxed.add((double) value);
+			}
+			add(boxed, segment.metadata(id));
+		}
+	}
+
 	record SearchResult(Map<String, String> metadata, double score) {
 	}
 
+	@FunctionalInterface
+	interface EntryConsumer {
+
+		void accept(float[] normalizedVector, Map<String, String> metadata);
+
+	}
+
 }
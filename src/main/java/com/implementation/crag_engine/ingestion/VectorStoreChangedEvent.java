@@ -0,0 +1,16 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.util.Set;
+
+// Null changed sources means the whole store may have changed, as after a snapshot restore or a full ingestion.
+public record VectorStoreChangedEvent(int size, Set<String> changedSources) {
+
+	public static VectorStoreChangedEvent replaced(int size) {
+		return new VectorStoreChangedEvent(size, null);
+	}
+
+	public boolean replacedAll() {
+		return changedSources == null;
+	}
+
+}
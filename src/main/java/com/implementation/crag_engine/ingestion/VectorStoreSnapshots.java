@@ -0,0 +1,80 @@
+package com.implementation.crag_engine.ingestion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+public class VectorStoreSnapshots {
+
+	private static final Logger logger = LoggerFactory.getLogger(VectorStoreSnapshots.class);
+
+	private final VectorStore vectorStore;
+	private final IngestionProperties properties;
+
+	public VectorStoreSnapshots(VectorStore vectorStore, IngestionProperties properties) {
+		this.vectorStore = vectorStore;
+		this.properties = properties;
+	}
+
+	public boolean restore(byte[] fingerprint) {
+		if (!properties.getSnapshot().isEnabled()) {
+			return false;
+		}
+		Path path = snapshotPath();
+		if (!Files.isRegularFile(path)) {
+			logger.info("No vector store snapshot found at {}", path);
+			return false;
+		}
+		long started = System.nanoTime();
+		VectorSegment segment;
+		try {
+			segment = VectorSegment.open(path);
+		}
+		catch (IOException ex) {
+			logger.warn("Ignoring unreadable vector store snapshot at {}", path, ex);
+			return false;
+		}
+		if (!segment.matches(fingerprint)) {
+			logger.info("Vector store snapshot at {} is stale; re-ingesting", path);
+			closeQuietly(segment);
+			return false;
+		}
+		vectorStore.restore(segment);
+		logger.info("Restored {} embeddings from snapshot {} in {} ms", segment.size(), path,
+			(System.nanoTime() - started) / 1_000_000);
+		return true;
+	}
+
+	public void save(byte[] fingerprint) {
+		if (!properties.getSnapshot().isEnabled()) {
+			return;
+		}
+		Path path = snapshotPath();
+		try {
+			VectorSegment.write(path, fingerprint, vectorStore);
+			logger.info("Wrote vector store snapshot with {} embeddings to {}", vectorStore.size(), path);
+		}
+		catch (IOException | RuntimeException ex) {
+			logger.warn("Failed to write vector store snapshot to {}", path, ex);
+		}
+	}
+
+	private Path snapshotPath() {
+		return Path.of(properties.getSnapshot().getPath());
+	}
+
+	private void closeQuietly(VectorSegment segment) {
+		try {
+			segment.close();
+		}
+		catch (IOException ex) {
+			logger.debug("Failed to close vector segment", ex);
+		}
+	}
+
+}
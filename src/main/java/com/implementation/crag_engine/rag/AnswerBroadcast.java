@@ -0,0 +1,66 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// The listener a shared pipeline run reports to. Events go to every request waiting on the run, and requests that
+// join late are first replayed what they missed. A listener that throws, such as a stream whose client went away, is
+// dropped, so one request cannot fail the run the others are waiting for.
+final class AnswerBroadcast implements AnswerListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnswerBroadcast.class);
+
+	private final List<Consumer<AnswerListener>> history = new ArrayList<>();
+	private final List<AnswerListener> listeners = new ArrayList<>();
+
+	synchronized void subscribe(AnswerListener listener) {
+		for (Consumer<AnswerListener> event : history) {
+			if (!deliver(listener, event)) {
+				return;
+			}
+		}
+		listeners.add(listener);
+	}
+
+	@Override
+	public void onStage(String stage) {
+		publish(listener -> listener.onStage(stage));
+	}
+
+	@Override
+	public void onDecision(OverallRetrievalDecision.Decision decision) {
+		publish(listener -> listener.onDecision(decision));
+	}
+
+	@Override
+	public void onToken(String token) {
+		publish(listener -> listener.onToken(token));
+	}
+
+	// Decided when generation starts, so a streaming request that joins later receives the answer only at the end.
+	@Override
+	public synchronized boolean isStreaming() {
+		return listeners.stream().anyMatch(AnswerListener::isStreaming);
+	}
+
+	private synchronized void publish(Consumer<AnswerListener> event) {
+		history.add(event);
+		listeners.removeIf(listener -> !deliver(listener, event));
+	}
+
+	private static boolean deliver(AnswerListener listener, Consumer<AnswerListener> event) {
+		try {
+			event.accept(listener);
+			return true;
+		}
+		catch (RuntimeException ex) {
+			logger.debug("Dropping answer listener that failed: {}", ex.toString());
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.implementation.crag_engine.rag;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.implementation.crag_engine.ingestion.VectorStoreChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Component
+public class AnswerCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnswerCache.class);
+
+	private final boolean enabled;
+	private final double similarityThreshold;
+	private final long ttlNanos;
+	// Writes go through the LRU map under its lock; lookups scan an immutable copy published after every write.
+	private final Map<String, Entry> entries;
+	private volatile Entry[] snapshot = new Entry[0];
+	private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+	private final AtomicLong generation = new AtomicLong();
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter coalesced;
+
+	public AnswerCache(@Value("${rag.answer-cache.enabled:true}") boolean enabled,
+			@Value("${rag.answer-cache.similarity-threshold:0.95}") double similarityThreshold,
+			@Value("${rag.answer-cache.ttl:10m}") Duration ttl,
+			@Value("${rag.answer-cache.max-entries:1000}") int maxEntries, MeterRegistry meterRegistry) {
+		if (similarityThreshold <= 0.0d || similarityThreshold > 1.0d) {
+			throw new IllegalArgumentException("rag.answer-cache.similarity-threshold must be in (0, 1]");
+		}
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("rag.answer-cache.max-entries must be positive");
+		}
+		this.enabled = enabled;
+		this.similarityThreshold = similarityThreshold;
+		this.ttlNanos = ttl.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.hits = Counter.builder("crag.answer-cache.requests").tag("result", "hit").register(meterRegistry);
+		this.misses = Counter.builder("crag.answer-cache.requests").tag("result", "miss").register(meterRegistry);
+		this.coalesced = Counter.builder("crag.answer-cache.coalesced")
+			.description("Requests that joined an identical in-flight question instead of running the pipeline")
+			.register(meterRegistry);
+		Gauge.builder("crag.answer-cache.entries", this, AnswerCache::size).register(meterRegistry);
+	}
+
+	// The computation reports to a broadcast rather than to the caller's listener, so that every request sharing it
+	// receives the events and none of them can break the run for the rest.
+	public String shared(String query, AnswerListener listener, Function<AnswerListener, String> computation,
+			Runnable onJoin) {
+		if (!enabled) {
+			return computation.apply(listener);
+		}
+		return singleFlight.execute(normalizeQuery(query), AnswerBroadcast::new, broadcast -> {
+			broadcast.subscribe(listener);
+			return computation.apply(broadcast);
+		}, broadcast -> {
+			coalesced.increment();
+			onJoin.run();
+			broadcast.subscribe(listener);
+		});
+	}
+
+	public long generation() {
+		return generation.get();
+	}
+
+	public String lookup(List<Double> queryVector) {
+		if (!enabled) {
+			return null;
+		}
+		float[] query = normalize(queryVector);
+		long now = System.nanoTime();
+		Entry best = null;
+		double bestSimilarity = similarityThreshold;
+		// Expired entries are skipped here and purged on the next write.
+		for (Entry entry : snapshot) {
+			if (now - entry.createdNanos > ttlNanos) {
+				continue;
+			}
+			double similarity = dot(query, entry.vector);
+			if (similarity >= bestSimilarity) {
+				best = entry;
+				bestSimilarity = similarity;
+			}
+		}
+		if (best == null) {
+			misses.increment();
+			return null;
+		}
+		synchronized (entries) {
+			// Only refreshes the LRU position; the map is not scanned under the lock.
+			entries.get(best.query);
+		}
+		hits.increment();
+		logger.info("Answer cache hit with similarity {} to cached query='{}'", bestSimilarity, best.query);
+		return best.answer;
+	}
+
+	public void put(String query, List<Double> queryVector, String answer, long observedGeneration) {
+		if (!enabled) {
+			return;
+		}
+		Entry entry = new Entry(normalizeQuery(query), normalize(queryVector), answer, System.nanoTime());
+		synchronized (entries) {
+			// Answers computed against an older store would be stale the moment they land.
+			if (observedGeneration != generation.get()) {
+				return;
+			}
+			long now = System.nanoTime();
+			entries.values().removeIf(existing -> now - existing.createdNanos > ttlNanos);
+			entries.put(entry.query, entry);
+			publish();
+		}
+	}
+
+	@EventListener
+	public void onVectorStoreChanged(VectorStoreChangedEvent event) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			if (!entries.isEmpty()) {
+				logger.info("Invalidating {} cached answers after vector store change", entries.size());
+			}
+			entries.clear();
+			publish();
+		}
+	}
+
+	private void publish() {
+		snapshot = entries.values().toArray(Entry[]::new);
+	}
+
+	private int size() {
+		return snapshot.length;
+	}
+
+	static String normalizeQuery(String query) {
+		return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+	private static float[] normalize(List<Double> vector) {
+		float[] normalized = new float[vector.size()];
+		double magnitude = 0;
+		for (int i = 0; i < normalized.length; i++) {
+			double value = vector.get(i);
+			normalized[i] = (float) value;
+			magnitude += value * value;
+		}
+		if (magnitude > 0) {
+			float inverse = (float) (1.0d / Math.sqrt(magnitude));
+			for (int i = 0; i < normalized.length; i++) {
+				normalized[i] *= inverse;
+			}
+		}
+		return normalized;
+	}
+
+	private static double dot(float[] left, float[] right) {
+		if (left.length != right.length) {
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < left.length; i++) {
+			sum += left[i] * right[i];
+		}
+		return sum;
+	}
+
+	private record Entry(String query, float[] vector, String answer, long createdNanos) {
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.implementation.crag_engine.rag;
+
+public interface AnswerListener {
+
+	AnswerListener NONE = new AnswerListener() {
+	};
+
+	default void onStage(String stage) {
+	}
+
+	default void onDecision(OverallRetrievalDecision.Decision decision) {
+	}
+
+	default void onToken(String token) {
+	}
+
+	default boolean isStreaming() {
+		return false;
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.implementation.crag_engine.ingestion.Bm25Index;
+import com.implementation.crag_engine.ingestion.MetadataFilter;
+import com.implementation.crag_engine.ingestion.VectorStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Retrieves chunks for a query from the vector store and, in hybrid mode, from the BM25 index as well. The two ranked
+// lists are merged with reciprocal-rank fusion; every returned hit still carries its cosine similarity, so thresholds
+// downstream keep their meaning.
+@Component
+public class HybridRetriever {
+
+	private static final Logger logger = LoggerFactory.getLogger(HybridRetriever.class);
+
+	private final VectorStore vectorStore;
+	private final Bm25Index lexicalIndex;
+	private final RagExecutor ragExecutor;
+	private final PipelineMetrics metrics;
+	private final RetrievalMode mode;
+	private final int rrfK;
+	private final int candidates;
+	private final Counter vectorOnlyHits;
+	private final Counter lexicalOnlyHits;
+	private final Counter sharedHits;
+
+	public HybridRetriever(VectorStore vectorStore, Bm25Index lexicalIndex, RagExecutor ragExecutor,
+			PipelineMetrics metrics, MeterRegistry meterRegistry,
+			@Value("${rag.retrieval.mode:vector}") RetrievalMode mode,
+			@Value("${rag.retrieval.rrf-k:60}") int rrfK,
+			@Value("${rag.retrieval.candidates:10}") int candidates) {
+		if (mode == RetrievalMode.HYBRID && !lexicalIndex.isEnabled()) {
+			throw new IllegalArgumentException("rag.retrieval.mode=hybrid requires ingestion.lexical.enabled=true");
+		}
+		if (rrfK <= 0) {
+			throw new IllegalArgumentException("rag.retrieval.rrf-k must be positive");
+		}
+		if (candidates <= 0) {
+			throw new IllegalArgumentException("rag.retrieval.candidates must be positive");
+		}
+		this.vectorStore = vectorStore;
+		this.lexicalIndex = lexicalIndex;
+		this.ragExecutor = ragExecutor;
+		this.metrics = metrics;
+		this.mode = mode;
+		this.rrfK = rrfK;
+		this.candidates = candidates;
+		this.vectorOnlyHits = hitCounter(meterRegistry, "vector");
+		this.lexicalOnlyHits = hitCounter(meterRegistry, "lexical");
+		this.sharedHits = hitCounter(meterRegistry, "both");
+	}
+
+	public List<VectorStore.SearchResult> search(String query, List<Double> queryVector, int topK) {
+		if (mode == RetrievalMode.VECTOR) {
+			return vectorStore.search(queryVector, topK);
+		}
+		int depth = Math.max(topK, candidates);
+		CompletableFuture<List<Bm25Index.Hit>> lexical = ragExecutor
+			.submit(() -> metrics.time("lexical-search", () -> lexicalIndex.search(query, depth)));
+		List<VectorStore.SearchResult> semantic = vectorStore.search(queryVector, depth);
+		return fuse(queryVector, semantic, join(lexical), topK);
+	}
+
+	// One vector-store pass for the whole batch, overlapped with the keyword lookups.
+	public List<List<VectorStore.SearchResult>> searchAll(List<String> queries, List<List<Double>> queryVectors,
+			int topK) {
+		if (mode == RetrievalMode.VECTOR) {
+			return vectorStore.searchAll(queryVectors, topK);
+		}
+		int depth = Math.max(topK, candidates);
+		CompletableFuture<List<List<Bm25Index.Hit>>> lexical = ragExecutor
+			.submit(() -> metrics.time("lexical-search",
+					() -> queries.stream().map(query -> lexicalIndex.search(query, depth)).toList()));
+		List<List<VectorStore.SearchResult>> semantic = vectorStore.searchAll(queryVectors, depth);
+		List<List<Bm25Index.Hit>> lexicalHits = join(lexical);
+		List<List<VectorStore.SearchResult>> results = new ArrayList<>(queries.size());
+		for (int i = 0; i < queries.size(); i++) {
+			results.add(fuse(queryVectors.get(i), semantic.get(i), lexicalHits.get(i), topK));
+		}
+		return results;
+	}
+
+	private List<VectorStore.SearchResult> fuse(List<Double> queryVector, List<VectorStore.SearchResult> semantic,
+			List<Bm25Index.Hit> lexical, int topK) {
+		// Insertion order breaks ties in favour of the vector ranking, as the sort below is stable.
+		Map<String, Double> fused = new LinkedHashMap<>();
+		Map<String, VectorStore.SearchResult> semanticByChunk = new HashMap<>();
+		for (int rank = 0; rank < semantic.size(); rank++) {
+			String chunkId = semantic.get(rank).metadata().get(VectorStore.CHUNK_ID);
+			if (chunkId != null && semanticByChunk.putIfAbsent(chunkId, semantic.get(rank)) == null) {
+				fused.merge(chunkId, 1.0d / (rrfK + rank + 1), Double::sum);
+			}
+		}
+		for (int rank = 0; rank < lexical.size(); rank++) {
+			fused.merge(lexical.get(rank).chunkId(), 1.0d / (rrfK + rank + 1), Double::sum);
+		}
+		List<String> ranked = fused.entrySet()
+			.stream()
+			.sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+			.limit(topK)
+			.map(Map.Entry::getKey)
+			.toList();
+		// Keyword-only hits are rescored against the query vector, which also resolves their metadata.
+		List<String> lexicalOnly = ranked.stream().filter(chunkId -> !semanticByChunk.containsKey(chunkId)).toList();
+		Map<String, VectorStore.SearchResult> rescored = new HashMap<>();
+		if (!lexicalOnly.isEmpty()) {
+			for (VectorStore.SearchResult result : vectorStore.search(queryVector, lexicalOnly.size(),
+					MetadataFilter.in(VectorStore.CHUNK_ID, lexicalOnly))) {
+				rescored.put(result.metadata().get(VectorStore.CHUNK_ID), result);
+			}
+		}
+		Map<String, VectorStore.SearchResult> results = new LinkedHashMap<>();
+		for (String chunkId : ranked) {
+			VectorStore.SearchResult result = semanticByChunk.getOrDefault(chunkId, rescored.get(chunkId));
+			// A chunk can vanish between the two lookups if ingestion replaces it.
+			if (result != null) {
+				results.put(chunkId, result);
+			}
+		}
+		recordSources(results.keySet(), semanticByChunk, lexical);
+		logger.debug("Fused {} vector and {} keyword hits into {} results ({} from keywords only)", semantic.size(),
+			lexical.size(), results.size(), lexicalOnly.size());
+		return new ArrayList<>(results.values());
+	}
+
+	private void recordSources(Iterable<String> chunkIds, Map<String, VectorStore.SearchResult> semanticByChunk,
+			List<Bm25Index.Hit> lexical) {
+		List<String> lexicalChunks = lexical.stream().map(Bm25Index.Hit::chunkId).toList();
+		for (String chunkId : chunkIds) {
+			boolean fromVector = semanticByChunk.containsKey(chunkId);
+			boolean fromLexical = lexicalChunks.contains(chunkId);
+			(fromVector && fromLexical ? sharedHits : fromVector ? vectorOnlyHits : lexicalOnlyHits).increment();
+		}
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		}
+		catch (CompletionException ex) {
+			throw new IllegalStateException("Keyword search failed", ex.getCause());
+		}
+	}
+
+	private static Counter hitCounter(MeterRegistry meterRegistry, String source) {
+		return Counter.builder("crag.retrieval.hits")
+			.description("Retrieved hits by the retriever that found them")
+			.tag("source", source)
+			.register(meterRegistry);
+	}
+
+	public enum RetrievalMode {
+		VECTOR,
+		HYBRID
+	}
+
+}
@@ -3,9 +3,13 @@ package com.implementation.crag_engine.rag;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -15,11 +19,29 @@ public class KnowledgeRefiner {
 	private static final Logger logger = LoggerFactory.getLogger(KnowledgeRefiner.class);
 	private static final int SENTENCE_GROUP_SIZE = 2;
 	private static final String SENTENCE_SPLIT_REGEX = "(?<=[.!?])\\s+";
+	// The whole answer must be a list of strip numbers, optionally in the brackets the prompt labels them with.
+	private static final Pattern STRIP_LIST_PATTERN = Pattern.compile("\\[?\\d+]?(\\s*,\\s*\\[?\\d+]?)*\\.?");
+	private static final Pattern STRIP_NUMBER_PATTERN = Pattern.compile("\\d+");
 
 	private final LlmService llmService;
+	private final RagExecutor ragExecutor;
+	private final RefinementMode mode;
+	private final int parallelism;
 
-	public KnowledgeRefiner(LlmService llmService) {
+	public KnowledgeRefiner(LlmService llmService, RagExecutor ragExecutor,
+			@Value("${rag.refinement.mode:per-strip}") RefinementMode mode,
+			@Value("${rag.refinement.parallelism:4}") int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("rag.refinement.parallelism must be positive");
+		}
 		this.llmService = llmService;
+		this.ragExecutor = ragExecutor;
+		this.mode = mode;
+		this.parallelism = parallelism;
+	}
+
+	public List<String> refineAll(String query, List<String> chunks) {
+		return ragExecutor.map(chunks, parallelism, chunk -> refine(query, chunk));
 	}
 
 	public String refine(String query, String chunk) {
@@ -31,12 +53,8 @@ public class KnowledgeRefiner {
 		}
 		try {
 			List<String> strips = splitIntoStrips(chunk);
-			List<String> compatible = new ArrayList<>();
-			for (String strip : strips) {
-				if (isCompatible(query, strip)) {
-					compatible.add(strip);
-				}
-			}
+			List<String> compatible = mode == RefinementMode.BATCH && strips.size() > 1
+					? classifyInBatch(query, strips) : classifyPerStrip(query, strips);
 			logger.info("Knowledge refinement retained {}/{} strips for query='{}'", compatible.size(), strips.size(),
 				query);
 			return String.join("\n", compatible);
@@ -46,7 +64,7 @@ public class KnowledgeRefiner {
 		}
 	}
 
-	private List<String> splitIntoStrips(String chunk) {
+	static List<String> splitIntoStrips(String chunk) {
 		String[] rawSentences = chunk.split(SENTENCE_SPLIT_REGEX);
 		List<String> sentences = new ArrayList<>();
 		for (String sentence : rawSentences) {
@@ -65,8 +83,51 @@ public class KnowledgeRefiner {
 		return strips;
 	}
 
+	private List<String> classifyPerStrip(String query, List<String> strips) {
+		List<String> compatible = new ArrayList<>();
+		for (String strip : strips) {
+			if (isCompatible(query, strip)) {
+				compatible.add(strip);
+			}
+		}
+		return compatible;
+	}
+
+	private List<String> classifyInBatch(String query, List<String> strips) {
+		String response = llmService.generate(buildBatchCompatibilityPrompt(query, strips), LlmPriority.REFINEMENT);
+		String normalized = response == null ? "" : response.trim().toLowerCase(Locale.ROOT);
+		if (normalized.equals("none") || normalized.equals("none.")) {
+			return List.of();
+		}
+		// Anything but a clean list of valid strip numbers, such as prose that happens to contain digits, is not
+		// trusted; the strips are then classified one by one as in per-strip mode.
+		if (!STRIP_LIST_PATTERN.matcher(normalized).matches()) {
+			return classifyAfterUnparsableBatch(query, strips, response);
+		}
+		TreeSet<Integer> selected = new TreeSet<>();
+		Matcher matcher = STRIP_NUMBER_PATTERN.matcher(normalized);
+		while (matcher.find()) {
+			int number = Integer.parseInt(matcher.group());
+			if (number < 1 || number > strips.size()) {
+				return classifyAfterUnparsableBatch(query, strips, response);
+			}
+			selected.add(number - 1);
+		}
+		List<String> compatible = new ArrayList<>(selected.size());
+		for (int index : selected) {
+			compatible.add(strips.get(index));
+		}
+		return compatible;
+	}
+
+	private List<String> classifyAfterUnparsableBatch(String query, List<String> strips, String response) {
+		logger.info("Could not parse batch compatibility result '{}'; classifying {} strips individually", response,
+			strips.size());
+		return classifyPerStrip(query, strips);
+	}
+
 	private boolean isCompatible(String query, String strip) {
-		String response = llmService.generate(buildCompatibilityPrompt(query, strip));
+		String response = llmService.generate(buildCompatibilityPrompt(query, strip), LlmPriority.REFINEMENT);
 		String normalized = response == null ? "" : response.trim().toLowerCase(Locale.ROOT);
 		if (normalized.startsWith("true")) {
 			return true;
@@ -90,4 +151,26 @@ public class KnowledgeRefiner {
 				""".formatted(query, strip);
 	}
 
+	private String buildBatchCompatibilityPrompt(String query, List<String> strips) {
+		StringBuilder numberedStrips = new StringBuilder();
+		for (int i = 0; i < strips.size(); i++) {
+			numberedStrips.append('[').append(i + 1).append("] ").append(strips.get(i)).append('\n');
+		}
+		return """
+				Determine which strips are compatible with the user query.
+				Return only the numbers of the compatible strips as a comma-separated list,
+				or the single word none if no strip is compatible.
+				
+				Query:
+				%s
+				
+				Strips:
+				%s""".formatted(query, numberedStrips);
+	}
+
+	public enum RefinementMode {
+		PER_STRIP,
+		BATCH
+	}
+
 }
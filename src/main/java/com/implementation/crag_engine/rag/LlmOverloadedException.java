@@ -0,0 +1,18 @@
+package com.implementation.crag_engine.rag;
+
+import java.time.Duration;
+
+public class LlmOverloadedException extends RuntimeException {
+
+	private final Duration retryAfter;
+
+	public LlmOverloadedException(String message, Duration retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+
+}
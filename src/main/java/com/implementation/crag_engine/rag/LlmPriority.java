@@ -0,0 +1,9 @@
+package com.implementation.crag_engine.rag;
+
+// Declaration order is scheduling order: earlier constants are dispatched first.
+public enum LlmPriority {
+	ANSWER,
+	REWRITE,
+	EVALUATION,
+	REFINEMENT
+}
@@ -0,0 +1,215 @@
+package com.implementation.crag_engine.rag;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Component
+public class LlmScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(LlmScheduler.class);
+	private static final Comparator<Waiter> DISPATCH_ORDER = Comparator.comparing(Waiter::priority)
+		.thenComparingLong(Waiter::requestSequence)
+		.thenComparingLong(Waiter::arrival);
+
+	private final int maxConcurrency;
+	private final int maxQueue;
+	private final long maxQueueWaitNanos;
+	private final Duration retryAfter;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(DISPATCH_ORDER);
+	private final Map<LlmPriority, Timer> queueTimers = new EnumMap<>(LlmPriority.class);
+	private final Counter rejectedQueueFull;
+	private final Counter rejectedTimeout;
+	private int available;
+	private long arrivals;
+
+	public LlmScheduler(@Value("${rag.llm.max-concurrency:4}") int maxConcurrency,
+			@Value("${rag.llm.max-queue:64}") int maxQueue,
+			@Value("${rag.llm.max-queue-wait:20s}") Duration maxQueueWait,
+			@Value("${rag.llm.retry-after:5s}") Duration retryAfter, MeterRegistry meterRegistry) {
+		if (maxConcurrency <= 0) {
+			throw new IllegalArgumentException("rag.llm.max-concurrency must be positive");
+		}
+		if (maxQueue < 0) {
+			throw new IllegalArgumentException("rag.llm.max-queue must not be negative");
+		}
+		this.maxConcurrency = maxConcurrency;
+		this.maxQueue = maxQueue;
+		this.maxQueueWaitNanos = maxQueueWait.toNanos();
+		this.retryAfter = retryAfter;
+		this.available = maxConcurrency;
+		for (LlmPriority priority : LlmPriority.values()) {
+			queueTimers.put(priority, Timer.builder("crag.llm.queue-time")
+				.description("Time LLM calls wait for a dispatch slot")
+				.tag("priority", priority.name().toLowerCase(Locale.ROOT))
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry));
+		}
+		this.rejectedQueueFull = rejectionCounter(meterRegistry, "queue-full");
+		this.rejectedTimeout = rejectionCounter(meterRegistry, "timeout");
+		Gauge.builder("crag.llm.queue-depth", this, LlmScheduler::queueDepth).register(meterRegistry);
+		Gauge.builder("crag.llm.active", this, LlmScheduler::active).register(meterRegistry);
+	}
+
+	public <T> T call(LlmPriority priority, Supplier<T> call) {
+		acquire(priority);
+		try {
+			return call.get();
+		}
+		finally {
+			release();
+		}
+	}
+
+	// Claims a slot only if one is free right now and nobody is queued for it; a successful claim must be released.
+	public boolean tryAcquire() {
+		lock.lock();
+		try {
+			if (waiters.isEmpty() && available > 0) {
+				available--;
+				return true;
+			}
+			return false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void acquire(LlmPriority priority) {
+		long started = System.nanoTime();
+		lock.lock();
+		try {
+			if (waiters.isEmpty() && available > 0) {
+				available--;
+				queueTimers.get(priority).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+				return;
+			}
+			if (waiters.size() >= maxQueue) {
+				rejectedQueueFull.increment();
+				throw new LlmOverloadedException("LLM queue is full", retryAfter);
+			}
+			Waiter waiter = new Waiter(priority, RequestOrder.current(), arrivals++, lock.newCondition());
+			waiters.add(waiter);
+			long remaining = maxQueueWaitNanos;
+			try {
+				while (!waiter.granted) {
+					if (remaining <= 0) {
+						waiters.remove(waiter);
+						rejectedTimeout.increment();
+						logger.warn("LLM call with priority {} timed out after waiting {} ms for a slot", priority,
+							TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos));
+						throw new LlmOverloadedException("Timed out waiting for an LLM slot", retryAfter);
+					}
+					remaining = waiter.condition.awaitNanos(remaining);
+				}
+			}
+			catch (InterruptedException ex) {
+				if (waiter.granted) {
+					releaseLocked();
+				}
+				else {
+					waiters.remove(waiter);
+				}
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for an LLM slot", ex);
+			}
+			queueTimers.get(priority).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public void release() {
+		lock.lock();
+		try {
+			releaseLocked();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void releaseLocked() {
+		Waiter next = waiters.poll();
+		if (next == null) {
+			available++;
+			return;
+		}
+		next.granted = true;
+		next.condition.signal();
+	}
+
+	private int queueDepth() {
+		lock.lock();
+		try {
+			return waiters.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private int active() {
+		lock.lock();
+		try {
+			return maxConcurrency - available;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private static Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+		return Counter.builder("crag.llm.rejected").tag("reason", reason).register(meterRegistry);
+	}
+
+	private static final class Waiter {
+
+		private final LlmPriority priority;
+		private final long requestSequence;
+		private final long arrival;
+		private final Condition condition;
+		private boolean granted;
+
+		private Waiter(LlmPriority priority, long requestSequence, long arrival, Condition condition) {
+			this.priority = priority;
+			this.requestSequence = requestSequence;
+			this.arrival = arrival;
+			this.condition = condition;
+		}
+
+		private LlmPriority priority() {
+			return priority;
+		}
+
+		private long requestSequence() {
+			return requestSequence;
+		}
+
+		private long arrival() {
+			return arrival;
+		}
+
+	}
+
+}
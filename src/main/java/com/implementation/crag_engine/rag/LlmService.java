@@ -1,27 +1,69 @@
 package com.implementation.crag_engine.rag;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClient;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.implementation.crag_engine.client.HedgeBudget;
+import com.implementation.crag_engine.client.OllamaClientProperties;
+import com.implementation.crag_engine.client.OllamaClients;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @Service
 public class LlmService {
 
 	private static final Logger logger = LoggerFactory.getLogger(LlmService.class);
-	private static final String BASE_URL = "http://localhost:11434/api";
-	private static final String MODEL = "phi3:mini";
 
 	private final RestClient restClient;
+	private final OllamaClients clients;
+	private final String model;
+	private final ObjectMapper objectMapper;
+	private final LlmScheduler scheduler;
+	// A hedged generation needs a scheduler slot of its own, so duplicates stay within rag.llm.max-concurrency.
+	private final HedgeBudget hedgeBudget;
+	private final PipelineMetrics metrics;
+	private final Timer timeToFirstToken;
+
+	public LlmService(OllamaClients clients, OllamaClientProperties properties, ObjectMapper objectMapper,
+			LlmScheduler scheduler, PipelineMetrics metrics, MeterRegistry meterRegistry) {
+		this.restClient = clients.create(properties.getBaseUrl());
+		this.clients = clients;
+		this.model = properties.getModel();
+		this.objectMapper = objectMapper;
+		this.scheduler = scheduler;
+		this.hedgeBudget = HedgeBudget.of(scheduler::tryAcquire, scheduler::release);
+		this.metrics = metrics;
+		this.timeToFirstToken = Timer.builder("crag.llm.time-to-first-token")
+			.description("Time from sending a streaming generation request to its first token")
+			.publishPercentiles(0.5, 0.95, 0.99)
+			.register(meterRegistry);
+	}
+
+	public String generate(String prompt, LlmPriority priority) {
+		metrics.recordPrompt(priority, prompt);
+		return scheduler.call(priority, () -> clients.idempotent("llm.generate", () -> send(prompt), hedgeBudget));
+	}
 
-	public LlmService(RestClient.Builder builder) {
-		this.restClient = builder.baseUrl(BASE_URL).build();
+	public String generateStream(String prompt, Consumer<String> onToken) {
+		metrics.recordPrompt(LlmPriority.ANSWER, prompt);
+		return scheduler.call(LlmPriority.ANSWER, () -> stream(prompt, onToken));
 	}
 
-	public String generate(String prompt) {
+	private String send(String prompt) {
 		logger.debug("Calling LLM with prompt size {}", prompt.length());
-		GenerationRequest request = new GenerationRequest(MODEL, prompt, false);
+		GenerationRequest request = new GenerationRequest(model, prompt, false);
 		GenerationResponse response = restClient.post()
 			.uri("/generate")
 			.contentType(MediaType.APPLICATION_JSON)
@@ -34,10 +76,56 @@ public class LlmService {
 		return response.response().trim();
 	}
 
+	private String stream(String prompt, Consumer<String> onToken) {
+		logger.debug("Streaming LLM call with prompt size {}", prompt.length());
+		GenerationRequest request = new GenerationRequest(model, prompt, true);
+		long started = System.nanoTime();
+		return restClient.post()
+			.uri("/generate")
+			.contentType(MediaType.APPLICATION_JSON)
+			.body(request)
+			.exchange((clientRequest, response) -> {
+				if (response.getStatusCode().isError()) {
+					throw new IllegalStateException(
+							"LLM streaming request failed with status " + response.getStatusCode());
+				}
+				StringBuilder answer = new StringBuilder();
+				boolean firstToken = true;
+				try (BufferedReader reader = new BufferedReader(
+						new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!StringUtils.hasText(line)) {
+							continue;
+						}
+						GenerationChunk chunk = objectMapper.readValue(line, GenerationChunk.class);
+						if (StringUtils.hasText(chunk.error())) {
+							throw new IllegalStateException("LLM streaming failed: " + chunk.error());
+						}
+						if (chunk.response() != null && !chunk.response().isEmpty()) {
+							if (firstToken) {
+								timeToFirstToken.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+								firstToken = false;
+							}
+							answer.append(chunk.response());
+							onToken.accept(chunk.response());
+						}
+						if (chunk.done()) {
+							break;
+						}
+					}
+				}
+				return answer.toString().trim();
+			});
+	}
+
 	private record GenerationRequest(String model, String prompt, boolean stream) {
 	}
 
 	private record GenerationResponse(String response) {
 	}
 
+	private record GenerationChunk(String response, boolean done, String error) {
+	}
+
 }
@@ -0,0 +1,82 @@
+package com.implementation.crag_engine.rag;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Component
+public class PipelineMetrics {
+
+	private final MeterRegistry meterRegistry;
+	private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+	private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+	private final Map<OverallRetrievalDecision.Decision, Counter> decisions =
+			new EnumMap<>(OverallRetrievalDecision.Decision.class);
+	private final Map<LlmPriority, DistributionSummary> promptSizes = new EnumMap<>(LlmPriority.class);
+	private final DistributionSummary llmCallsPerRequest;
+
+	public PipelineMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		for (OverallRetrievalDecision.Decision decision : OverallRetrievalDecision.Decision.values()) {
+			decisions.put(decision, Counter.builder("crag.decision")
+				.description("Retrieval decisions taken by the evaluator")
+				.tag("decision", decision.name().toLowerCase(Locale.ROOT))
+				.register(meterRegistry));
+		}
+		for (LlmPriority priority : LlmPriority.values()) {
+			promptSizes.put(priority, DistributionSummary.builder("crag.llm.prompt-size")
+				.description("Characters sent to the LLM per call")
+				.baseUnit("characters")
+				.tag("priority", priority.name().toLowerCase(Locale.ROOT))
+				.publishPercentileHistogram()
+				.register(meterRegistry));
+		}
+		this.llmCallsPerRequest = DistributionSummary.builder("crag.request.llm")
+			.description("LLM calls made while answering one query")
+			.baseUnit("calls")
+			.publishPercentileHistogram()
+			.register(meterRegistry);
+	}
+
+	// Histograms rather than client-side percentiles, so that stage latencies can be aggregated across instances.
+	<T> T time(String stage, Supplier<T> work) {
+		return stageTimers.computeIfAbsent(stage, key -> Timer.builder("crag.stage")
+			.description("Latency of one CRAG pipeline stage")
+			.tag("stage", key)
+			.publishPercentileHistogram()
+			.register(meterRegistry))
+			.record(work);
+	}
+
+	void recordRequest(String outcome, long startedNanos) {
+		requestTimers.computeIfAbsent(outcome, key -> Timer.builder("crag.request")
+			.description("End-to-end latency of answering a query, by how it was answered")
+			.tag("outcome", key)
+			.publishPercentileHistogram()
+			.maximumExpectedValue(Duration.ofMinutes(5))
+			.register(meterRegistry))
+			.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+		llmCallsPerRequest.record(RequestOrder.llmCalls());
+	}
+
+	void recordDecision(OverallRetrievalDecision.Decision decision) {
+		decisions.get(decision).increment();
+	}
+
+	void recordPrompt(LlmPriority priority, String prompt) {
+		promptSizes.get(priority).record(prompt.length());
+		RequestOrder.countLlmCall();
+	}
+
+}
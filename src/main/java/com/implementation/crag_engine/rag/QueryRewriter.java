@@ -1,27 +1,42 @@
 package com.implementation.crag_engine.rag;
 
+import java.time.Duration;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Service
 public class QueryRewriter {
 
 	private static final Logger logger = LoggerFactory.getLogger(QueryRewriter.class);
 
 	private final LlmService llmService;
+	private final TtlCache<String, String> rewrites;
 
-	public QueryRewriter(LlmService llmService) {
+	public QueryRewriter(LlmService llmService, MeterRegistry meterRegistry,
+			@Value("${rag.rewrite-cache.enabled:true}") boolean cacheEnabled,
+			@Value("${rag.rewrite-cache.ttl:30m}") Duration cacheTtl,
+			@Value("${rag.rewrite-cache.max-entries:1000}") int cacheMaxEntries) {
 		this.llmService = llmService;
+		this.rewrites = new TtlCache<>("query-rewrite", cacheEnabled, cacheTtl, Duration.ZERO, cacheMaxEntries,
+			rewritten -> false, meterRegistry);
 	}
 
 	public String rewriteForWebSearch(String originalQuery) {
 		if (!StringUtils.hasText(originalQuery)) {
 			throw new IllegalArgumentException("originalQuery must not be blank");
 		}
+		return rewrites.get(AnswerCache.normalizeQuery(originalQuery), () -> rewrite(originalQuery));
+	}
+
+	private String rewrite(String originalQuery) {
 		try {
-			String rewritten = llmService.generate(buildRewritePrompt(originalQuery)).trim();
+			String rewritten = llmService.generate(buildRewritePrompt(originalQuery), LlmPriority.REWRITE).trim();
 			if (!StringUtils.hasText(rewritten)) {
 				throw new IllegalStateException("LLM returned empty rewritten query");
 			}
@@ -1,20 +1,64 @@
 package com.implementation.crag_engine.rag;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @RestController
 public class RagController {
 
+	public static final String DECISION_HEADER = "X-Crag-Decision";
+
+	private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(5);
+	private static final Duration BATCH_TIMEOUT = Duration.ofHours(1);
+
 	private final RagService ragService;
+	private final RagExecutor ragExecutor;
+	private final Timer timeToFirstToken;
+	// Each stream holds a worker thread for its whole answer, so their number is capped rather than left to the
+	// unbounded worker pool.
+	private final Semaphore streams;
+	private final Duration retryAfter;
+	private final Counter streamsRejected;
 
-	public RagController(RagService ragService) {
+	public RagController(RagService ragService, RagExecutor ragExecutor, MeterRegistry meterRegistry,
+			@Value("${rag.stream.max-concurrency:64}") int maxStreams,
+			@Value("${rag.llm.retry-after:5s}") Duration retryAfter) {
+		if (maxStreams <= 0) {
+			throw new IllegalArgumentException("rag.stream.max-concurrency must be positive");
+		}
 		this.ragService = ragService;
+		this.ragExecutor = ragExecutor;
+		this.streams = new Semaphore(maxStreams);
+		this.retryAfter = retryAfter;
+		this.streamsRejected = Counter.builder("crag.ask.stream.rejected")
+			.description("Streaming questions refused because the stream limit was reached")
+			.register(meterRegistry);
+		this.timeToFirstToken = Timer.builder("crag.ask.time-to-first-token")
+			.description("Time from receiving a streaming question to emitting the first answer token")
+			.publishPercentiles(0.5, 0.95, 0.99)
+			.register(meterRegistry);
 	}
 
 	@GetMapping("/ask")
@@ -22,11 +66,115 @@ public class RagController {
 		if (!StringUtils.hasText(query)) {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query parameter must not be blank");
 		}
-		String answer = ragService.answer(query.trim());
-		return ResponseEntity.ok(new AnswerResponse(answer));
+		DecisionListener listener = new DecisionListener();
+		String answer = ragService.answer(query.trim(), listener);
+		return ResponseEntity.ok().header(DECISION_HEADER, listener.path).body(new AnswerResponse(answer));
+	}
+
+	@GetMapping(path = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> askStream(@RequestParam("query") String query) {
+		if (!StringUtils.hasText(query)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query parameter must not be blank");
+		}
+		// The refusal has no body, as the client only accepts an event stream.
+		if (!streams.tryAcquire()) {
+			streamsRejected.increment();
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+				.build();
+		}
+		SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT.toMillis());
+		SseAnswerListener listener = new SseAnswerListener(emitter, timeToFirstToken);
+		ragExecutor.submit(() -> {
+			try {
+				listener.complete(ragService.answer(query.trim(), listener));
+			}
+			finally {
+				streams.release();
+			}
+			return null;
+		}).exceptionally(ex -> {
+			if (ex.getCause() instanceof LlmOverloadedException overload) {
+				listener.overloaded(overload);
+			}
+			else {
+				emitter.completeWithError(ex);
+			}
+			return null;
+		});
+		return ResponseEntity.ok(emitter);
+	}
+
+	// Answers are sent as "answer" events in completion order, each carrying the index of its query in the request.
+	@PostMapping(path = "/ask/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter askBatch(@RequestBody BatchRequest request) {
+		try {
+			ragService.checkBatch(request.queries());
+		}
+		catch (IllegalArgumentException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+		}
+		SseEmitter emitter = new SseEmitter(BATCH_TIMEOUT.toMillis());
+		ragExecutor.submit(() -> {
+			ragService.answerBatch(request.queries(), answer -> sendBatchAnswer(emitter, answer));
+			emitter.complete();
+			return null;
+		}).exceptionally(ex -> {
+			emitter.completeWithError(ex.getCause() != null ? ex.getCause() : ex);
+			return null;
+		});
+		return emitter;
+	}
+
+	@ExceptionHandler(LlmOverloadedException.class)
+	public ResponseEntity<AnswerResponse> overloaded(LlmOverloadedException ex) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+			.header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(ex))
+			.body(new AnswerResponse(RagService.BUSY_MESSAGE));
+	}
+
+	static String retryAfterSeconds(LlmOverloadedException ex) {
+		return String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds()));
+	}
+
+	private static void sendBatchAnswer(SseEmitter emitter, RagService.BatchAnswer answer) {
+		try {
+			// Answers complete on several workers at once; the emitter must see one event at a time.
+			synchronized (emitter) {
+				emitter.send(SseEmitter.event().name("answer").data(answer, MediaType.APPLICATION_JSON));
+			}
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Client disconnected from batch answer stream", ex);
+		}
 	}
 
 	public record AnswerResponse(String answer) {
 	}
 
+	public record BatchRequest(List<String> queries) {
+	}
+
+	// Reports which path produced the answer, so that load tests can break latencies down by CRAG decision.
+	private static class DecisionListener implements AnswerListener {
+
+		private volatile String path = "none";
+
+		// A request that joined a shared run is replayed that run's events, but its path stays "shared".
+		@Override
+		public void onStage(String stage) {
+			if (!path.equals("shared") && (stage.equals("cache") || stage.equals("shared"))) {
+				path = stage;
+			}
+		}
+
+		@Override
+		public void onDecision(OverallRetrievalDecision.Decision decision) {
+			if (!path.equals("shared")) {
+				path = decision.name().toLowerCase(Locale.ROOT);
+			}
+		}
+
+	}
+
 }
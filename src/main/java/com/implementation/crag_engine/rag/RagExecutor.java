@@ -0,0 +1,99 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+@Component
+public class RagExecutor {
+
+	private final ExecutorService executor;
+
+	public RagExecutor() {
+		AtomicInteger threadIndex = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "rag-worker-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		return CompletableFuture.supplyAsync(RequestOrder.propagate(task), executor);
+	}
+
+	// Background work that is not part of the submitting request: its LLM calls are not counted against that request,
+	// and it queues behind every request at the LLM scheduler rather than taking the request's place.
+	public <T> CompletableFuture<T> submitDetached(Supplier<T> task) {
+		return CompletableFuture.supplyAsync(task, executor);
+	}
+
+	// Unlike a CompletableFuture, the returned future interrupts the task's thread when cancelled, so blocking HTTP
+	// calls inside the task are abandoned too.
+	public <T> Future<T> submitInterruptible(Supplier<T> task) {
+		Supplier<T> propagated = RequestOrder.propagate(task);
+		return executor.submit(propagated::get);
+	}
+
+	public <T, R> List<R> map(List<T> items, int parallelism, Function<T, R> function) {
+		if (parallelism <= 1 || items.size() <= 1) {
+			List<R> results = new ArrayList<>(items.size());
+			for (T item : items) {
+				results.add(function.apply(item));
+			}
+			return results;
+		}
+		Object[] results = new Object[items.size()];
+		AtomicInteger next = new AtomicInteger();
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		Runnable worker = RequestOrder.propagate(() -> {
+			int index;
+			while (failure.get() == null && (index = next.getAndIncrement()) < items.size()) {
+				try {
+					results[index] = function.apply(items.get(index));
+				}
+				catch (RuntimeException ex) {
+					failure.compareAndSet(null, ex);
+				}
+			}
+		});
+		int helpers = Math.min(parallelism, items.size()) - 1;
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[helpers];
+		for (int i = 0; i < helpers; i++) {
+			futures[i] = CompletableFuture.runAsync(worker, executor);
+		}
+		// The calling thread works through the list too, so one slot of the limit never idles.
+		worker.run();
+		try {
+			CompletableFuture.allOf(futures).join();
+		}
+		catch (CompletionException ex) {
+			failure.compareAndSet(null, new IllegalStateException("Parallel task failed", ex.getCause()));
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		@SuppressWarnings("unchecked")
+		List<R> ordered = (List<R>) Arrays.asList(results);
+		return ordered;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+}
@@ -1,17 +1,30 @@
 package com.implementation.crag_engine.rag;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import com.implementation.crag_engine.ingestion.EmbeddingService;
 import com.implementation.crag_engine.ingestion.VectorStore;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Service
 public class RagService {
 
@@ -21,64 +34,232 @@ public class RagService {
 	private static final String REFINEMENT_FALLBACK_MESSAGE = "Retrieved documents did not produce compatible refined context.";
 	private static final String WEB_SEARCH_FALLBACK_MESSAGE = "Unable to retrieve relevant information from web search.";
 	private static final String AMBIGUOUS_FALLBACK_MESSAGE = "Unable to retrieve sufficiently relevant information.";
+	static final String BUSY_MESSAGE = "The service is busy. Please retry shortly.";
+	private static final Set<String> FALLBACK_MESSAGES = Set.of(FALLBACK_MESSAGE, REFINEMENT_FALLBACK_MESSAGE,
+		WEB_SEARCH_FALLBACK_MESSAGE, AMBIGUOUS_FALLBACK_MESSAGE);
 
 	private final EmbeddingService embeddingService;
-	private final VectorStore vectorStore;
+	private final HybridRetriever hybridRetriever;
 	private final PromptBuilder promptBuilder;
 	private final LlmService llmService;
 	private final RetrievalEvaluator retrievalEvaluator;
 	private final KnowledgeRefiner knowledgeRefiner;
 	private final QueryRewriter queryRewriter;
 	private final WebSearchService webSearchService;
+	private final RagExecutor ragExecutor;
+	private final AnswerCache answerCache;
+	private final PipelineMetrics metrics;
+	private final boolean speculativeWebSearch;
+	private final double speculativeMaxTopScore;
+	private final int batchParallelism;
+	private final int maxBatchSize;
+	private final Counter speculationsUsed;
+	private final Counter speculationsDiscarded;
 
-	public RagService(EmbeddingService embeddingService, VectorStore vectorStore, PromptBuilder promptBuilder,
+	public RagService(EmbeddingService embeddingService, HybridRetriever hybridRetriever, PromptBuilder promptBuilder,
 			LlmService llmService, RetrievalEvaluator retrievalEvaluator, KnowledgeRefiner knowledgeRefiner,
-			QueryRewriter queryRewriter, WebSearchService webSearchService) {
+			QueryRewriter queryRewriter, WebSearchService webSearchService, RagExecutor ragExecutor,
+			AnswerCache answerCache, PipelineMetrics metrics, MeterRegistry meterRegistry,
+			@Value("${rag.speculative.enabled:false}") boolean speculativeWebSearch,
+			@Value("${rag.speculative.max-top-score:0.75}") double speculativeMaxTopScore,
+			@Value("${rag.batch.parallelism:4}") int batchParallelism,
+			@Value("${rag.batch.max-size:1000}") int maxBatchSize) {
+		if (batchParallelism <= 0) {
+			throw new IllegalArgumentException("rag.batch.parallelism must be positive");
+		}
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("rag.batch.max-size must be positive");
+		}
 		this.embeddingService = embeddingService;
-		this.vectorStore = vectorStore;
+		this.hybridRetriever = hybridRetriever;
 		this.promptBuilder = promptBuilder;
 		this.llmService = llmService;
 		this.retrievalEvaluator = retrievalEvaluator;
 		this.knowledgeRefiner = knowledgeRefiner;
 		this.queryRewriter = queryRewriter;
 		this.webSearchService = webSearchService;
+		this.ragExecutor = ragExecutor;
+		this.answerCache = answerCache;
+		this.metrics = metrics;
+		this.speculativeWebSearch = speculativeWebSearch;
+		this.speculativeMaxTopScore = speculativeMaxTopScore;
+		this.batchParallelism = batchParallelism;
+		this.maxBatchSize = maxBatchSize;
+		this.speculationsUsed = speculationCounter(meterRegistry, "used");
+		this.speculationsDiscarded = speculationCounter(meterRegistry, "discarded");
 	}
 
 	public String answer(String query) {
+		return answer(query, AnswerListener.NONE);
+	}
+
+	public String answer(String query, AnswerListener listener) {
 		if (!StringUtils.hasText(query)) {
 			throw new IllegalArgumentException("Query must not be blank");
 		}
+		return answerCache.shared(query, listener,
+				shared -> RequestOrder.call(() -> answerUncached(query, shared)), () -> listener.onStage("shared"));
+	}
+
+	// Queries are answered independently once the shared work is done: one batched embedding call, one pass over the
+	// vector store for all cache misses, and one pipeline run per distinct question, however often it repeats.
+	public void answerBatch(List<String> queries, Consumer<BatchAnswer> onAnswer) {
+		checkBatch(queries);
+		Map<String, List<Integer>> positions = new LinkedHashMap<>();
+		List<String> distinct = new ArrayList<>();
+		for (int i = 0; i < queries.size(); i++) {
+			String query = queries.get(i);
+			positions.computeIfAbsent(AnswerCache.normalizeQuery(query), key -> {
+				distinct.add(query.trim());
+				return new ArrayList<>();
+			}).add(i);
+		}
+		long cacheGeneration = answerCache.generation();
+		List<List<Double>> queryVectors = metrics.time("embed", () -> embeddingService.embedAll(distinct));
+		Retrieval[] retrievals = new Retrieval[distinct.size()];
+		List<Integer> misses = new ArrayList<>();
+		for (int i = 0; i < distinct.size(); i++) {
+			String cached = answerCache.lookup(queryVectors.get(i));
+			retrievals[i] = new Retrieval(queryVectors.get(i), cacheGeneration, List.of(), cached);
+			if (cached == null) {
+				misses.add(i);
+			}
+		}
+		List<List<VectorStore.SearchResult>> hits = metrics.time("search",
+				() -> hybridRetriever.searchAll(misses.stream().map(distinct::get).toList(),
+						misses.stream().map(queryVectors::get).toList(), TOP_K));
+		for (int i = 0; i < misses.size(); i++) {
+			retrievals[misses.get(i)] = new Retrieval(queryVectors.get(misses.get(i)), cacheGeneration, hits.get(i),
+					null);
+		}
+		logger.info("Answering batch of {} queries ({} distinct, {} cached) with parallelism {}", queries.size(),
+			distinct.size(), distinct.size() - misses.size(), batchParallelism);
+		ragExecutor.map(IntStream.range(0, distinct.size()).boxed().toList(), batchParallelism, i -> {
+			String query = distinct.get(i);
+			String answer;
+			try {
+				answer = answerCache.shared(query, AnswerListener.NONE,
+						shared -> RequestOrder.call(() -> answerRetrieved(query, shared, () -> retrievals[i])),
+						() -> logger.debug("Batch query '{}' joined an identical question in flight", query));
+			}
+			catch (LlmOverloadedException ex) {
+				answer = BUSY_MESSAGE;
+			}
+			for (int position : positions.get(AnswerCache.normalizeQuery(query))) {
+				onAnswer.accept(new BatchAnswer(position, queries.get(position), answer));
+			}
+			return null;
+		});
+	}
+
+	public void checkBatch(List<String> queries) {
+		if (queries == null || queries.isEmpty()) {
+			throw new IllegalArgumentException("queries must not be empty");
+		}
+		if (queries.size() > maxBatchSize) {
+			throw new IllegalArgumentException("A batch may hold at most " + maxBatchSize + " queries");
+		}
+		for (int i = 0; i < queries.size(); i++) {
+			if (!StringUtils.hasText(queries.get(i))) {
+				throw new IllegalArgumentException("Query " + i + " must not be blank");
+			}
+		}
+	}
+
+	private String answerUncached(String query, AnswerListener listener) {
+		return answerRetrieved(query, listener, () -> {
+			long cacheGeneration = answerCache.generation();
+			List<Double> queryVector = metrics.time("embed", () -> embeddingService.embed(query));
+			String cached = answerCache.lookup(queryVector);
+			if (cached != null) {
+				return new Retrieval(queryVector, cacheGeneration, List.of(), cached);
+			}
+			List<VectorStore.SearchResult> hits = metrics.time("search",
+					() -> hybridRetriever.search(query, queryVector, TOP_K));
+			return new Retrieval(queryVector, cacheGeneration, hits, null);
+		});
+	}
+
+	private String answerRetrieved(String query, AnswerListener listener, Supplier<Retrieval> retriever) {
+		long started = System.nanoTime();
+		String outcome = "fallback";
+		WebResults webResults = null;
 		try {
-			List<Double> queryVector = embeddingService.embed(query);
-			List<VectorStore.SearchResult> hits = vectorStore.search(queryVector, TOP_K);
+			listener.onStage("retrieve");
+			Retrieval retrieval = retriever.get();
+			List<Double> queryVector = retrieval.queryVector();
+			if (retrieval.cachedAnswer() != null) {
+				outcome = "cache";
+				listener.onStage("cache");
+				listener.onToken(retrieval.cachedAnswer());
+				return retrieval.cachedAnswer();
+			}
+			List<VectorStore.SearchResult> hits = retrieval.hits();
 			if (hits.isEmpty()) {
 				logger.warn("No documents retrieved for query '{}'", query);
 				return FALLBACK_MESSAGE;
 			}
-			List<String> contexts = hits.stream()
-				.map(VectorStore.SearchResult::metadata)
-				.map(metadata -> metadata.get("text"))
-				.filter(Objects::nonNull)
-				.filter(StringUtils::hasText)
-				.collect(Collectors.toList());
+			// Duplicate chunks would only be scored and refined twice; each keeps the score of its best-ranked hit.
+			Map<String, Double> similarities = new LinkedHashMap<>();
+			for (VectorStore.SearchResult hit : hits) {
+				String text = hit.metadata().get("text");
+				if (StringUtils.hasText(text)) {
+					similarities.putIfAbsent(text, hit.score());
+				}
+			}
+			List<String> contexts = new ArrayList<>(similarities.keySet());
 			if (contexts.isEmpty()) {
 				logger.warn("Retrieved hits lacked usable context for query '{}'", query);
 				return FALLBACK_MESSAGE;
 			}
-			OverallRetrievalDecision decision = retrievalEvaluator.evaluateOverall(contexts, query);
-			return switch (decision.decision()) {
-				case INCORRECT -> answerWithWebSearch(query);
-				case CORRECT -> answerFromRetrievedContext(query, decision.docsAboveLowerThreshold());
-				case AMBIGUOUS -> answerFromAmbiguousContext(query, decision);
+			webResults = new WebResults(query, startSpeculativeWebSearch(query,
+					similarities.values().stream().mapToDouble(Double::doubleValue).max().orElse(0.0d)));
+			listener.onStage("evaluate");
+			OverallRetrievalDecision decision = metrics.time("evaluate",
+					() -> retrievalEvaluator.evaluateOverall(contexts, new ArrayList<>(similarities.values()), query));
+			metrics.recordDecision(decision.decision());
+			listener.onDecision(decision.decision());
+			String answer = switch (decision.decision()) {
+				case INCORRECT -> answerWithWebSearch(query, webResults, listener);
+				case CORRECT -> answerFromRetrievedContext(query, decision.docsAboveLowerThreshold(), listener);
+				case AMBIGUOUS -> answerFromAmbiguousContext(query, decision, webResults, listener);
 			};
+			if (!FALLBACK_MESSAGES.contains(answer)) {
+				outcome = decision.decision().name().toLowerCase(Locale.ROOT);
+				answerCache.put(query, queryVector, answer, retrieval.cacheGeneration());
+			}
+			return answer;
 		}
 		catch (Exception ex) {
+			LlmOverloadedException overload = overloadCause(ex);
+			if (overload != null) {
+				outcome = "shed";
+				logger.warn("Shedding query '{}': {}", query, overload.getMessage());
+				throw overload;
+			}
+			outcome = "error";
 			logger.error("Failed to process query '{}'", query, ex);
 			return "An error occurred while processing your request. Please try again.";
 		}
+		finally {
+			if (webResults != null) {
+				webResults.release();
+			}
+			metrics.recordRequest(outcome, started);
+		}
 	}
 
-	private String answerFromAmbiguousContext(String originalQuery, OverallRetrievalDecision decision) {
+	private Future<List<DocumentChunk>> startSpeculativeWebSearch(String query, double topScore) {
+		if (!speculativeWebSearch || topScore >= speculativeMaxTopScore) {
+			return null;
+		}
+		logger.info("Starting speculative web search for query='{}' because top similarity {} < {}", query, topScore,
+			speculativeMaxTopScore);
+		return ragExecutor.submitInterruptible(() -> searchWeb(query));
+	}
+
+	private String answerFromAmbiguousContext(String originalQuery, OverallRetrievalDecision decision,
+			WebResults webResults, AnswerListener listener) {
 		List<EvaluatedDocument> goodDocs = decision.goodDocs();
 		List<EvaluatedDocument> badDocs = decision.badDocs();
 		int totalDocs = decision.highDocs().size() + goodDocs.size() + badDocs.size();
@@ -91,9 +272,8 @@ public class RagService {
 
 		if (!badDocs.isEmpty()) {
 			logger.info("Ambiguous workflow triggering web search supplementation for query='{}'", originalQuery);
-			String rewrittenQuery = queryRewriter.rewriteForWebSearch(originalQuery);
-			List<DocumentChunk> webResults = webSearchService.search(rewrittenQuery);
-			combinedContexts.addAll(webResults.stream().map(DocumentChunk::text).toList());
+			listener.onStage("web-search");
+			combinedContexts.addAll(webResults.get().stream().map(DocumentChunk::text).toList());
 		}
 		else {
 			logger.info("Ambiguous workflow skipping web search because badDocs is empty for query='{}'", originalQuery);
@@ -103,8 +283,10 @@ public class RagService {
 		if (combinedContexts.isEmpty()) {
 			return AMBIGUOUS_FALLBACK_MESSAGE;
 		}
-		List<String> refinedCombinedContexts = combinedContexts.stream()
-			.map(text -> knowledgeRefiner.refine(originalQuery, text))
+		listener.onStage("refine");
+		List<String> refinedCombinedContexts = metrics
+			.time("refine", () -> knowledgeRefiner.refineAll(originalQuery, combinedContexts))
+			.stream()
 			.filter(StringUtils::hasText)
 			.collect(Collectors.toList());
 		logger.info("Ambiguous workflow refined doc count={} for query='{}'", refinedCombinedContexts.size(),
@@ -114,13 +296,15 @@ public class RagService {
 		}
 		String prompt = promptBuilder.buildPrompt(refinedCombinedContexts, originalQuery);
 		logger.info("Ambiguous workflow final context size={} chars for query='{}'", prompt.length(), originalQuery);
-		return llmService.generate(prompt);
+		return generate(prompt, listener);
 	}
 
-	private String answerFromRetrievedContext(String query, List<EvaluatedDocument> selectedDocuments) {
-		List<String> refinedContexts = selectedDocuments.stream()
-			.map(EvaluatedDocument::originalChunk)
-			.map(text -> knowledgeRefiner.refine(query, text))
+	private String answerFromRetrievedContext(String query, List<EvaluatedDocument> selectedDocuments,
+			AnswerListener listener) {
+		List<String> selectedChunks = selectedDocuments.stream().map(EvaluatedDocument::originalChunk).toList();
+		listener.onStage("refine");
+		List<String> refinedContexts = metrics.time("refine", () -> knowledgeRefiner.refineAll(query, selectedChunks))
+			.stream()
 			.filter(StringUtils::hasText)
 			.collect(Collectors.toList());
 		if (refinedContexts.isEmpty()) {
@@ -128,19 +312,21 @@ public class RagService {
 			return REFINEMENT_FALLBACK_MESSAGE;
 		}
 		String prompt = promptBuilder.buildPrompt(refinedContexts, query);
-		return llmService.generate(prompt);
+		return generate(prompt, listener);
 	}
 
-	private String answerWithWebSearch(String originalQuery) {
-		String rewrittenQuery = queryRewriter.rewriteForWebSearch(originalQuery);
-		List<DocumentChunk> webResults = webSearchService.search(rewrittenQuery);
-		if (webResults.isEmpty()) {
+	private String answerWithWebSearch(String originalQuery, WebResults webResults, AnswerListener listener) {
+		listener.onStage("web-search");
+		List<DocumentChunk> webChunks = webResults.get();
+		if (webChunks.isEmpty()) {
 			logger.warn("No web results found after query rewrite for query '{}'", originalQuery);
 			return WEB_SEARCH_FALLBACK_MESSAGE;
 		}
-		List<String> refinedWebContexts = webResults.stream()
-			.map(DocumentChunk::text)
-			.map(text -> knowledgeRefiner.refine(originalQuery, text))
+		List<String> webTexts = webChunks.stream().map(DocumentChunk::text).toList();
+		listener.onStage("refine");
+		List<String> refinedWebContexts = metrics
+			.time("refine", () -> knowledgeRefiner.refineAll(originalQuery, webTexts))
+			.stream()
 			.filter(StringUtils::hasText)
 			.collect(Collectors.toList());
 		logger.info("Refined web contexts count={} for query='{}'", refinedWebContexts.size(), originalQuery);
@@ -148,7 +334,84 @@ public class RagService {
 			return WEB_SEARCH_FALLBACK_MESSAGE;
 		}
 		String prompt = promptBuilder.buildPrompt(refinedWebContexts, originalQuery);
-		return llmService.generate(prompt);
+		return generate(prompt, listener);
+	}
+
+	private String generate(String prompt, AnswerListener listener) {
+		listener.onStage("generate");
+		if (listener.isStreaming()) {
+			return metrics.time("generate", () -> llmService.generateStream(prompt, listener::onToken));
+		}
+		return metrics.time("generate", () -> llmService.generate(prompt, LlmPriority.ANSWER));
+	}
+
+	private List<DocumentChunk> searchWeb(String query) {
+		String rewrittenQuery = metrics.time("rewrite", () -> queryRewriter.rewriteForWebSearch(query));
+		return metrics.time("web-search", () -> webSearchService.search(rewrittenQuery));
+	}
+
+	private static LlmOverloadedException overloadCause(Throwable ex) {
+		for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+			if (cause instanceof LlmOverloadedException overload) {
+				return overload;
+			}
+		}
+		return null;
+	}
+
+	private static Counter speculationCounter(MeterRegistry meterRegistry, String outcome) {
+		return Counter.builder("crag.web-search.speculative").tag("outcome", outcome).register(meterRegistry);
+	}
+
+	public record BatchAnswer(int index, String query, String answer) {
+	}
+
+	private record Retrieval(List<Double> queryVector, long cacheGeneration, List<VectorStore.SearchResult> hits,
+			String cachedAnswer) {
+	}
+
+	private final class WebResults {
+
+		private final String originalQuery;
+		private final Future<List<DocumentChunk>> speculative;
+		private boolean used;
+
+		private WebResults(String originalQuery, Future<List<DocumentChunk>> speculative) {
+			this.originalQuery = originalQuery;
+			this.speculative = speculative;
+		}
+
+		private List<DocumentChunk> get() {
+			if (speculative != null) {
+				used = true;
+				try {
+					return speculative.get();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the web search", ex);
+				}
+				catch (ExecutionException ex) {
+					throw new IllegalStateException("Speculative web search failed", ex.getCause());
+				}
+			}
+			return searchWeb(originalQuery);
+		}
+
+		private void release() {
+			if (speculative == null) {
+				return;
+			}
+			if (used) {
+				speculationsUsed.increment();
+				return;
+			}
+			// Interrupts the search if it is still running, which aborts its HTTP request.
+			speculative.cancel(true);
+			speculationsDiscarded.increment();
+			logger.debug("Cancelled speculative web search for query='{}'", originalQuery);
+		}
+
 	}
 
 }
@@ -0,0 +1,118 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.implementation.crag_engine.ingestion.IngestionProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Classifies clear-cut hits from their retrieval similarity alone, leaving only the uncertain band to the LLM judge.
+@Component
+public class RelevanceGate {
+
+	private static final Logger logger = LoggerFactory.getLogger(RelevanceGate.class);
+
+	private final boolean enabled;
+	private final double correctSimilarity;
+	private final double incorrectSimilarity;
+	private final double verificationSampleRate;
+	private final Map<EvaluatedDocument.Classification, Counter> verdicts =
+			new EnumMap<>(EvaluatedDocument.Classification.class);
+	private final Counter judged;
+	private final Counter llmCallsSaved;
+	private final Map<EvaluatedDocument.Classification, Counter> agreements =
+			new EnumMap<>(EvaluatedDocument.Classification.class);
+	private final Map<EvaluatedDocument.Classification, Counter> disagreements =
+			new EnumMap<>(EvaluatedDocument.Classification.class);
+
+	public RelevanceGate(RelevanceGateProperties properties, IngestionProperties ingestionProperties,
+			MeterRegistry meterRegistry) {
+		if (properties.getVerificationSampleRate() < 0.0d || properties.getVerificationSampleRate() > 1.0d) {
+			throw new IllegalArgumentException("rag.evaluation.gate.verification-sample-rate must be in [0, 1]");
+		}
+		String model = ingestionProperties.getEmbedding().getModel();
+		RelevanceGateProperties.Calibration calibration = properties.getModels().get(model);
+		if (calibration != null && calibration.getIncorrect() >= calibration.getCorrect()) {
+			throw new IllegalArgumentException("rag.evaluation.gate.models." + model
+					+ ".incorrect must be below rag.evaluation.gate.models." + model + ".correct");
+		}
+		this.enabled = properties.isEnabled() && calibration != null;
+		if (properties.isEnabled() && calibration == null) {
+			logger.warn("Relevance gate is enabled but has no calibration for embedding model '{}'; every hit will be "
+					+ "scored by the LLM", model);
+		}
+		this.correctSimilarity = calibration != null ? calibration.getCorrect() : Double.POSITIVE_INFINITY;
+		this.incorrectSimilarity = calibration != null ? calibration.getIncorrect() : Double.NEGATIVE_INFINITY;
+		this.verificationSampleRate = properties.getVerificationSampleRate();
+		for (EvaluatedDocument.Classification classification : new EvaluatedDocument.Classification[] {
+				EvaluatedDocument.Classification.CORRECT, EvaluatedDocument.Classification.INCORRECT }) {
+			String verdict = classification.name().toLowerCase(Locale.ROOT);
+			verdicts.put(classification, gateCounter(meterRegistry, verdict));
+			agreements.put(classification, verificationCounter(meterRegistry, verdict, "agree"));
+			disagreements.put(classification, verificationCounter(meterRegistry, verdict, "disagree"));
+		}
+		this.judged = gateCounter(meterRegistry, "judged");
+		this.llmCallsSaved = Counter.builder("crag.evaluation.gate.llm-calls-saved")
+			.description("LLM relevance-scoring calls skipped because the gate classified the hits")
+			.register(meterRegistry);
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	// Null means the similarity falls in the uncertain band and the hit must be judged by the LLM.
+	EvaluatedDocument.Classification classify(Double similarity) {
+		if (!enabled || similarity == null) {
+			return null;
+		}
+		if (similarity >= correctSimilarity) {
+			return EvaluatedDocument.Classification.CORRECT;
+		}
+		if (similarity <= incorrectSimilarity) {
+			return EvaluatedDocument.Classification.INCORRECT;
+		}
+		return null;
+	}
+
+	void recordVerdicts(Map<EvaluatedDocument.Classification, Integer> gated, int judgedCount, int callsSaved) {
+		gated.forEach((classification, count) -> verdicts.get(classification).increment(count));
+		judged.increment(judgedCount);
+		llmCallsSaved.increment(callsSaved);
+	}
+
+	boolean shouldVerify() {
+		return verificationSampleRate > 0.0d && ThreadLocalRandom.current().nextDouble() < verificationSampleRate;
+	}
+
+	void recordVerification(EvaluatedDocument.Classification verdict, EvaluatedDocument.Classification judgement) {
+		(verdict == judgement ? agreements : disagreements).get(verdict).increment();
+		if (verdict != judgement) {
+			logger.info("Relevance gate classified a hit {} but the LLM judged it {}", verdict, judgement);
+		}
+	}
+
+	private static Counter gateCounter(MeterRegistry meterRegistry, String verdict) {
+		return Counter.builder("crag.evaluation.gate")
+			.description("Retrieved hits by how the relevance gate handled them")
+			.tag("verdict", verdict)
+			.register(meterRegistry);
+	}
+
+	private static Counter verificationCounter(MeterRegistry meterRegistry, String verdict, String result) {
+		return Counter.builder("crag.evaluation.gate.verifications")
+			.description("Sampled LLM checks of gate verdicts")
+			.tag("verdict", verdict)
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+
+}
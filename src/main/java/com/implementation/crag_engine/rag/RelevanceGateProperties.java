@@ -0,0 +1,59 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "rag.evaluation.gate")
+public class RelevanceGateProperties {
+
+	private boolean enabled = false;
+	private double verificationSampleRate = 0.05;
+	// Keyed by embedding model, since cosine similarities are only comparable within one model.
+	private final Map<String, Calibration> models = new HashMap<>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public double getVerificationSampleRate() {
+		return verificationSampleRate;
+	}
+
+	public void setVerificationSampleRate(double verificationSampleRate) {
+		this.verificationSampleRate = verificationSampleRate;
+	}
+
+	public Map<String, Calibration> getModels() {
+		return models;
+	}
+
+	public static class Calibration {
+
+		private double correct = Double.POSITIVE_INFINITY;
+		private double incorrect = Double.NEGATIVE_INFINITY;
+
+		public double getCorrect() {
+			return correct;
+		}
+
+		public void setCorrect(double correct) {
+			this.correct = correct;
+		}
+
+		public double getIncorrect() {
+			return incorrect;
+		}
+
+		public void setIncorrect(double incorrect) {
+			this.incorrect = incorrect;
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+final class RequestOrder {
+
+	private static final AtomicLong NEXT = new AtomicLong();
+	private static final ThreadLocal<Request> CURRENT = new ThreadLocal<>();
+
+	private RequestOrder() {
+	}
+
+	static long current() {
+		Request request = CURRENT.get();
+		return request != null ? request.sequence : Long.MAX_VALUE;
+	}
+
+	static void countLlmCall() {
+		Request request = CURRENT.get();
+		if (request != null) {
+			request.llmCalls.incrementAndGet();
+		}
+	}
+
+	static int llmCalls() {
+		Request request = CURRENT.get();
+		return request != null ? request.llmCalls.get() : 0;
+	}
+
+	static <T> T call(Supplier<T> request) {
+		if (CURRENT.get() != null) {
+			return request.get();
+		}
+		return callAs(new Request(NEXT.incrementAndGet(), new AtomicInteger()), request);
+	}
+
+	static <T> Supplier<T> propagate(Supplier<T> task) {
+		Request request = CURRENT.get();
+		if (request == null) {
+			return task;
+		}
+		return () -> callAs(request, task);
+	}
+
+	static Runnable propagate(Runnable task) {
+		Request request = CURRENT.get();
+		if (request == null) {
+			return task;
+		}
+		return () -> callAs(request, () -> {
+			task.run();
+			return null;
+		});
+	}
+
+	private static <T> T callAs(Request request, Supplier<T> task) {
+		Request previous = CURRENT.get();
+		CURRENT.set(request);
+		try {
+			return task.get();
+		}
+		finally {
+			if (previous == null) {
+				CURRENT.remove();
+			}
+			else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	// LLM calls made by tasks the request fans out to are counted against it as well.
+	private record Request(long sequence, AtomicInteger llmCalls) {
+	}
+
+}
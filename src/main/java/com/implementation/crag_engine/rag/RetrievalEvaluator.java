@@ -1,6 +1,10 @@
 package com.implementation.crag_engine.rag;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,28 +19,84 @@ public class RetrievalEvaluator {
 
 	private static final Logger logger = LoggerFactory.getLogger(RetrievalEvaluator.class);
 	private static final Pattern SCORE_PATTERN = Pattern.compile("(?i)score\\s*[:=]\\s*(0(?:\\.\\d+)?|1(?:\\.0+)?)");
+	private static final Pattern INDEXED_SCORE_PATTERN = Pattern
+		.compile("(?im)^\\W*(?:chunk\\s*)?#?(\\d+)\\W*\\s*score\\s*[:=]\\s*(0(?:\\.\\d+)?|1(?:\\.0+)?)");
 
 	private final LlmService llmService;
+	private final RagExecutor ragExecutor;
+	private final RelevanceGate relevanceGate;
 	private final double upperThreshold;
 	private final double lowerThreshold;
+	private final EvaluationMode mode;
+	private final int parallelism;
 
-	public RetrievalEvaluator(LlmService llmService,
+	public RetrievalEvaluator(LlmService llmService, RagExecutor ragExecutor, RelevanceGate relevanceGate,
 			@Value("${rag.retrieval.upper-threshold:0.8}") double upperThreshold,
-			@Value("${rag.retrieval.lower-threshold:0.3}") double lowerThreshold) {
+			@Value("${rag.retrieval.lower-threshold:0.3}") double lowerThreshold,
+			@Value("${rag.evaluation.mode:parallel}") EvaluationMode mode,
+			@Value("${rag.evaluation.parallelism:4}") int parallelism) {
 		this.llmService = llmService;
+		this.ragExecutor = ragExecutor;
+		this.relevanceGate = relevanceGate;
 		if (lowerThreshold < 0.0d || upperThreshold > 1.0d || lowerThreshold >= upperThreshold) {
 			throw new IllegalArgumentException(
 					"Invalid retrieval thresholds: require 0 <= lower-threshold < upper-threshold <= 1");
 		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("rag.evaluation.parallelism must be positive");
+		}
 		this.upperThreshold = upperThreshold;
 		this.lowerThreshold = lowerThreshold;
+		this.mode = mode;
+		this.parallelism = parallelism;
 	}
 
 	public OverallRetrievalDecision evaluateOverall(List<String> chunks, String query) {
+		return evaluateOverall(chunks, null, query);
+	}
+
+	// Similarities are the retrieval scores of the chunks, in the same order; with the relevance gate enabled, chunks
+	// whose similarity is clearly high or clearly low are classified without asking the LLM.
+	public OverallRetrievalDecision evaluateOverall(List<String> chunks, List<Double> similarities, String query) {
 		if (chunks == null || chunks.isEmpty()) {
 			throw new IllegalArgumentException("chunks must not be empty");
 		}
-		List<EvaluatedDocument> evaluatedDocuments = chunks.stream().map(chunk -> evaluate(query, chunk)).toList();
+		if (similarities != null && similarities.size() != chunks.size()) {
+			throw new IllegalArgumentException("similarities must match chunks");
+		}
+		EvaluatedDocument[] gated = new EvaluatedDocument[chunks.size()];
+		List<Integer> judged = new ArrayList<>();
+		Map<EvaluatedDocument.Classification, Integer> gatedCounts = new EnumMap<>(
+				EvaluatedDocument.Classification.class);
+		for (int i = 0; i < chunks.size(); i++) {
+			Double similarity = similarities == null ? null : similarities.get(i);
+			EvaluatedDocument.Classification verdict = relevanceGate.classify(similarity);
+			if (verdict == null) {
+				judged.add(i);
+				continue;
+			}
+			gated[i] = gatedDocument(query, chunks.get(i), similarity, verdict);
+			gatedCounts.merge(verdict, 1, Integer::sum);
+		}
+		List<String> judgedChunks = judged.stream().map(chunks::get).toList();
+		List<EvaluatedDocument> judgedDocuments = judgedChunks.isEmpty() ? List.of() : switch (mode) {
+			case SEQUENTIAL -> judgedChunks.stream().map(chunk -> evaluate(query, chunk)).toList();
+			case PARALLEL -> ragExecutor.map(judgedChunks, parallelism, chunk -> evaluate(query, chunk));
+			case BATCH -> evaluateBatch(query, judgedChunks);
+		};
+		List<EvaluatedDocument> evaluatedDocuments = new ArrayList<>(chunks.size());
+		for (int i = 0, next = 0; i < chunks.size(); i++) {
+			evaluatedDocuments.add(gated[i] != null ? gated[i] : judgedDocuments.get(next++));
+		}
+		if (relevanceGate.isEnabled() && similarities != null) {
+			int gatedTotal = chunks.size() - judged.size();
+			// A batch prompt costs one call however many chunks it carries, so only skipping it entirely saves one.
+			int callsSaved = mode != EvaluationMode.BATCH ? gatedTotal : judged.isEmpty() ? 1 : 0;
+			relevanceGate.recordVerdicts(gatedCounts, judged.size(), callsSaved);
+			if (gatedTotal > 0) {
+				verifySample(query, gated);
+			}
+		}
 		List<EvaluatedDocument> highDocs = evaluatedDocuments.stream()
 			.filter(document -> document.score() >= upperThreshold)
 			.toList();
@@ -73,18 +133,93 @@ public class RetrievalEvaluator {
 			throw new IllegalArgumentException("chunk must not be blank");
 		}
 		try {
-			String response = llmService.generate(buildEvaluationPrompt(query, chunk));
-			double score = parseScore(response);
-			EvaluatedDocument.Classification thresholdClassification = classifyByThreshold(score);
-			logger.info("Retrieval evaluation score={} classification={} for query='{}'", score, thresholdClassification,
-				query);
-			return new EvaluatedDocument(chunk, score, thresholdClassification);
+			String response = llmService.generate(buildEvaluationPrompt(query, chunk), LlmPriority.EVALUATION);
+			return toEvaluatedDocument(query, chunk, parseScore(response));
 		}
 		catch (Exception ex) {
 			throw new IllegalStateException("Failed to evaluate retrieval relevance", ex);
 		}
 	}
 
+	private List<EvaluatedDocument> evaluateBatch(String query, List<String> chunks) {
+		if (!StringUtils.hasText(query)) {
+			throw new IllegalArgumentException("query must not be blank");
+		}
+		if (chunks.size() == 1) {
+			return List.of(evaluate(query, chunks.get(0)));
+		}
+		Double[] scores = new Double[chunks.size()];
+		try {
+			parseBatchScores(llmService.generate(buildBatchEvaluationPrompt(query, chunks), LlmPriority.EVALUATION),
+				scores);
+		}
+		catch (LlmOverloadedException ex) {
+			throw ex;
+		}
+		catch (Exception ex) {
+			logger.warn("Batch relevance scoring failed for query='{}'; scoring chunks individually", query, ex);
+		}
+		List<Integer> unscored = new ArrayList<>();
+		for (int i = 0; i < scores.length; i++) {
+			if (scores[i] == null) {
+				unscored.add(i);
+			}
+		}
+		if (!unscored.isEmpty()) {
+			logger.info("Batch relevance scoring left {}/{} chunks unscored for query='{}'; falling back per chunk",
+				unscored.size(), chunks.size(), query);
+			List<EvaluatedDocument> fallback = ragExecutor.map(unscored, parallelism,
+					index -> evaluate(query, chunks.get(index)));
+			for (int i = 0; i < unscored.size(); i++) {
+				scores[unscored.get(i)] = fallback.get(i).score();
+			}
+		}
+		List<EvaluatedDocument> documents = new ArrayList<>(chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			documents.add(toEvaluatedDocument(query, chunks.get(i), scores[i]));
+		}
+		return documents;
+	}
+
+	private EvaluatedDocument gatedDocument(String query, String chunk, double similarity,
+			EvaluatedDocument.Classification verdict) {
+		// Clamp into the verdict's score band so the set-level thresholds below agree with the gate.
+		double score = verdict == EvaluatedDocument.Classification.CORRECT
+				? Math.min(1.0d, Math.max(upperThreshold, similarity))
+				: Math.max(0.0d, Math.min(lowerThreshold, similarity));
+		logger.info("Relevance gate similarity={} classification={} for query='{}'", similarity, verdict, query);
+		return new EvaluatedDocument(chunk, score, verdict);
+	}
+
+	// Checks one gated chunk against the LLM off the request path, to catch thresholds that drift out of calibration.
+	private void verifySample(String query, EvaluatedDocument[] gated) {
+		if (!relevanceGate.shouldVerify()) {
+			return;
+		}
+		List<EvaluatedDocument> candidates = new ArrayList<>();
+		for (EvaluatedDocument document : gated) {
+			if (document != null) {
+				candidates.add(document);
+			}
+		}
+		EvaluatedDocument sample = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+		ragExecutor.submitDetached(() -> evaluate(query, sample.originalChunk()))
+			.whenComplete((judgement, ex) -> {
+				if (ex != null) {
+					logger.debug("Relevance gate verification failed for query='{}'", query, ex);
+					return;
+				}
+				relevanceGate.recordVerification(sample.classification(), judgement.classification());
+			});
+	}
+
+	private EvaluatedDocument toEvaluatedDocument(String query, String chunk, double score) {
+		EvaluatedDocument.Classification thresholdClassification = classifyByThreshold(score);
+		logger.info("Retrieval evaluation score={} classification={} for query='{}'", score, thresholdClassification,
+			query);
+		return new EvaluatedDocument(chunk, score, thresholdClassification);
+	}
+
 	private String buildEvaluationPrompt(String query, String chunk) {
 		return """
 				Score the relevance of the retrieved context chunk for the user query.
@@ -99,7 +234,49 @@ public class RetrievalEvaluator {
 				""".formatted(query, chunk);
 	}
 
-	private double parseScore(String response) {
+	private String buildBatchEvaluationPrompt(String query, List<String> chunks) {
+		StringBuilder numberedChunks = new StringBuilder();
+		for (int i = 0; i < chunks.size(); i++) {
+			numberedChunks.append('[').append(i + 1).append("]\n").append(chunks.get(i)).append("\n\n");
+		}
+		return """
+				Score the relevance of each retrieved context chunk for the user query.
+				Return exactly one line per chunk, in this format:
+				[<chunk number>] score: <number between 0 and 1>
+
+				Query:
+				%s
+
+				Chunks:
+				%s""".formatted(query, numberedChunks);
+	}
+
+	static void parseBatchScores(String response, Double[] scores) {
+		String text = response == null ? "" : response;
+		Matcher indexed = INDEXED_SCORE_PATTERN.matcher(text);
+		boolean foundIndexed = false;
+		while (indexed.find()) {
+			int index = Integer.parseInt(indexed.group(1)) - 1;
+			if (index >= 0 && index < scores.length && scores[index] == null) {
+				scores[index] = Double.parseDouble(indexed.group(2));
+				foundIndexed = true;
+			}
+		}
+		if (foundIndexed) {
+			return;
+		}
+		// Without chunk numbers the scores can only be trusted if there is exactly one per chunk.
+		List<Double> positional = new ArrayList<>();
+		Matcher matcher = SCORE_PATTERN.matcher(text);
+		while (matcher.find()) {
+			positional.add(Double.parseDouble(matcher.group(1)));
+		}
+		if (positional.size() == scores.length) {
+			positional.toArray(scores);
+		}
+	}
+
+	static double parseScore(String response) {
 		Matcher matcher = SCORE_PATTERN.matcher(response == null ? "" : response);
 		if (!matcher.find()) {
 			throw new IllegalStateException("Could not parse score from evaluator response: " + response);
@@ -121,4 +298,10 @@ public class RetrievalEvaluator {
 		return EvaluatedDocument.Classification.AMBIGUOUS;
 	}
 
+	public enum EvaluationMode {
+		SEQUENTIAL,
+		PARALLEL,
+		BATCH
+	}
+
 }
@@ -0,0 +1,54 @@
+package com.implementation.crag_engine.rag;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+final class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+	V execute(K key, Supplier<V> computation, Runnable onShared) {
+		return execute(key, () -> null, context -> computation.get(), context -> onShared.run());
+	}
+
+	// Every caller creates a context, but only the one that runs the computation keeps it; callers that join the
+	// flight receive that context instead of their own.
+	@SuppressWarnings("unchecked")
+	<C> V execute(K key, Supplier<C> newContext, Function<C, V> computation, Consumer<C> onShared) {
+		Flight<V> owned = new Flight<>(new CompletableFuture<>(), newContext.get());
+		Flight<V> existing = inFlight.putIfAbsent(key, owned);
+		if (existing != null) {
+			onShared.accept((C) existing.context());
+			try {
+				return existing.result().join();
+			}
+			catch (CompletionException ex) {
+				if (ex.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw ex;
+			}
+		}
+		try {
+			V value = computation.apply((C) owned.context());
+			owned.result().complete(value);
+			return value;
+		}
+		catch (RuntimeException | Error ex) {
+			owned.result().completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			inFlight.remove(key, owned);
+		}
+	}
+
+	private record Flight<V>(CompletableFuture<V> result, Object context) {
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.implementation.crag_engine.rag;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Timer;
+
+final class SseAnswerListener implements AnswerListener {
+
+	private final SseEmitter emitter;
+	private final Timer timeToFirstToken;
+	private final long startedNanos = System.nanoTime();
+	private boolean awaitingFirstToken = true;
+
+	SseAnswerListener(SseEmitter emitter, Timer timeToFirstToken) {
+		this.emitter = emitter;
+		this.timeToFirstToken = timeToFirstToken;
+	}
+
+	@Override
+	public void onStage(String stage) {
+		send("stage", new StageEvent(stage));
+	}
+
+	@Override
+	public void onDecision(OverallRetrievalDecision.Decision decision) {
+		send("decision", new DecisionEvent(decision));
+	}
+
+	@Override
+	public void onToken(String token) {
+		if (awaitingFirstToken) {
+			timeToFirstToken.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+			awaitingFirstToken = false;
+		}
+		send("token", new TokenEvent(token));
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return true;
+	}
+
+	void complete(String answer) {
+		send("done", new RagController.AnswerResponse(answer));
+		emitter.complete();
+	}
+
+	void overloaded(LlmOverloadedException ex) {
+		send("overloaded", new OverloadedEvent(ex.getMessage(), RagController.retryAfterSeconds(ex)));
+		emitter.complete();
+	}
+
+	private void send(String name, Object payload) {
+		try {
+			emitter.send(SseEmitter.event().name(name).data(payload, MediaType.APPLICATION_JSON));
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Client disconnected from answer stream", ex);
+		}
+	}
+
+	record StageEvent(String stage) {
+	}
+
+	record DecisionEvent(OverallRetrievalDecision.Decision decision) {
+	}
+
+	record TokenEvent(String token) {
+	}
+
+	record OverloadedEvent(String error, String retryAfterSeconds) {
+	}
+
+}
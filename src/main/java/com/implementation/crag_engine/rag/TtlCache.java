@@ -0,0 +1,111 @@
+package com.implementation.crag_engine.rag;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+final class TtlCache<K, V> {
+
+	private static final double LOAD_TIME_SMOOTHING = 0.2d;
+
+	private final boolean enabled;
+	private final long ttlNanos;
+	private final long negativeTtlNanos;
+	private final Predicate<V> negative;
+	private final Map<K, Entry<V>> entries;
+	private final SingleFlight<K, V> singleFlight = new SingleFlight<>();
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter coalesced;
+	private final Counter savedLatency;
+	private final Timer loadTimer;
+	private volatile double averageLoadSeconds;
+
+	TtlCache(String name, boolean enabled, Duration ttl, Duration negativeTtl, int maxEntries, Predicate<V> negative,
+			MeterRegistry meterRegistry) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("max-entries for cache " + name + " must be positive");
+		}
+		this.enabled = enabled;
+		this.ttlNanos = ttl.toNanos();
+		this.negativeTtlNanos = negativeTtl.toNanos();
+		this.negative = negative;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.hits = requestCounter(meterRegistry, name, "hit");
+		this.misses = requestCounter(meterRegistry, name, "miss");
+		this.coalesced = requestCounter(meterRegistry, name, "coalesced");
+		this.savedLatency = Counter.builder("crag.cache.saved-latency")
+			.description("Estimated outbound call time avoided by cache hits and coalesced lookups")
+			.baseUnit("seconds")
+			.tag("cache", name)
+			.register(meterRegistry);
+		this.loadTimer = Timer.builder("crag.cache.load").tag("cache", name).register(meterRegistry);
+		Gauge.builder("crag.cache.entries", this, TtlCache::size).tag("cache", name).register(meterRegistry);
+	}
+
+	V get(K key, Supplier<V> loader) {
+		if (!enabled) {
+			return loader.get();
+		}
+		long now = System.nanoTime();
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && now - entry.expiresAtNanos < 0) {
+				hits.increment();
+				savedLatency.increment(averageLoadSeconds);
+				return entry.value;
+			}
+			if (entry != null) {
+				entries.remove(key);
+			}
+		}
+		return singleFlight.execute(key, () -> load(key, loader), () -> {
+			coalesced.increment();
+			savedLatency.increment(averageLoadSeconds);
+		});
+	}
+
+	private V load(K key, Supplier<V> loader) {
+		misses.increment();
+		long start = System.nanoTime();
+		V value = loader.get();
+		long elapsed = System.nanoTime() - start;
+		loadTimer.record(Duration.ofNanos(elapsed));
+		double seconds = elapsed / 1_000_000_000.0d;
+		averageLoadSeconds = averageLoadSeconds == 0 ? seconds
+				: averageLoadSeconds + LOAD_TIME_SMOOTHING * (seconds - averageLoadSeconds);
+		long entryTtl = negative.test(value) ? negativeTtlNanos : ttlNanos;
+		if (entryTtl > 0) {
+			synchronized (entries) {
+				entries.put(key, new Entry<>(value, System.nanoTime() + entryTtl));
+			}
+		}
+		return value;
+	}
+
+	private int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static Counter requestCounter(MeterRegistry meterRegistry, String name, String result) {
+		return Counter.builder("crag.cache.requests").tag("cache", name).tag("result", result).register(meterRegistry);
+	}
+
+	private record Entry<V>(V value, long expiresAtNanos) {
+	}
+
+}
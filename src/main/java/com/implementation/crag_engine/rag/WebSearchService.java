@@ -2,27 +2,42 @@ package com.implementation.crag_engine.rag;
 
 import java.util.List;
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.util.UriBuilder;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Service
 public class WebSearchService {
 
 	private static final Logger logger = LoggerFactory.getLogger(WebSearchService.class);
 	private static final int TOP_K = 3;
-	private static final String WIKIPEDIA_BASE_URL = "https://en.wikipedia.org";
 	private static final String HTML_TAG_REGEX = "<[^>]*>";
 
 	private final RestClient restClient;
+	private final String baseUrl;
+	private final TtlCache<String, List<DocumentChunk>> results;
 
-	public WebSearchService(RestClient.Builder builder) {
-		this.restClient = builder.baseUrl(WIKIPEDIA_BASE_URL).build();
+	public WebSearchService(RestClient.Builder builder, MeterRegistry meterRegistry,
+			@Value("${rag.web-search.base-url:https://en.wikipedia.org}") String baseUrl,
+			@Value("${rag.web-search.cache.enabled:true}") boolean cacheEnabled,
+			@Value("${rag.web-search.cache.ttl:10m}") Duration cacheTtl,
+			@Value("${rag.web-search.cache.negative-ttl:1m}") Duration cacheNegativeTtl,
+			@Value("${rag.web-search.cache.max-entries:1000}") int cacheMaxEntries) {
+		this.restClient = builder.baseUrl(baseUrl).build();
+		this.baseUrl = baseUrl;
+		this.results = new TtlCache<>("web-search", cacheEnabled, cacheTtl, cacheNegativeTtl, cacheMaxEntries,
+			List::isEmpty, meterRegistry);
 	}
 
 	public List<DocumentChunk> search(String query) {
@@ -30,28 +45,50 @@ public class WebSearchService {
 			throw new IllegalArgumentException("query must not be blank");
 		}
 		try {
-			WikipediaSearchResponse response = restClient.get()
+			return results.get(query.trim(), () -> fetch(query));
+		}
+		catch (CancellationException ex) {
+			if (Thread.currentThread().isInterrupted()) {
+				logger.debug("Web search was cancelled for query='{}'", query);
+				return List.of();
+			}
+			// The search this call joined was cancelled by its own caller; this caller still wants the results.
+			return search(query);
+		}
+		catch (Exception ex) {
+			logger.error("Web search failed for query='{}'", query, ex);
+			return List.of();
+		}
+	}
+
+	// Failures propagate to the cache so that only genuine answers, including empty ones, are remembered.
+	private List<DocumentChunk> fetch(String query) {
+		WikipediaSearchResponse response;
+		try {
+			response = restClient.get()
 				.uri(uriBuilder -> buildSearchUri(uriBuilder, query))
 				.accept(MediaType.APPLICATION_JSON)
 				.retrieve()
 				.body(WikipediaSearchResponse.class);
-			if (response == null || response.query() == null || response.query().search() == null) {
-				logger.warn("Web search API returned empty response for query='{}'", query);
-				return List.of();
+		}
+		catch (RestClientException ex) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("Web search was interrupted");
 			}
-			List<DocumentChunk> chunks = response.query()
-				.search()
-				.stream()
-				.limit(TOP_K)
-				.map(this::toDocumentChunk)
-				.toList();
-			logger.info("Web search returned {} results for query='{}'", chunks.size(), query);
-			return chunks;
+			throw ex;
 		}
-		catch (Exception ex) {
-			logger.error("Web search failed for query='{}'", query, ex);
+		if (response == null || response.query() == null || response.query().search() == null) {
+			logger.warn("Web search API returned empty response for query='{}'", query);
 			return List.of();
 		}
+		List<DocumentChunk> chunks = response.query()
+			.search()
+			.stream()
+			.limit(TOP_K)
+			.map(this::toDocumentChunk)
+			.toList();
+		logger.info("Web search returned {} results for query='{}'", chunks.size(), query);
+		return chunks;
 	}
 
 	private URI buildSearchUri(UriBuilder uriBuilder, String query) {
@@ -69,7 +106,7 @@ public class WebSearchService {
 		String title = StringUtils.hasText(result.title()) ? result.title().trim() : "Untitled";
 		String snippet = sanitizeSnippet(result.snippet());
 		String text = "Title: " + title + System.lineSeparator() + "Snippet: " + snippet;
-		String source = "https://en.wikipedia.org/wiki/" + title.replace(' ', '_');
+		String source = baseUrl + "/wiki/" + title.replace(' ', '_');
 		return new DocumentChunk(text, source, title);
 	}
 
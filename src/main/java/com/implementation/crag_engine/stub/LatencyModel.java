@@ -0,0 +1,42 @@
+package com.implementation.crag_engine.stub;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+final class LatencyModel {
+
+	// The 99th percentile of a standard normal distribution.
+	private static final double Z_99 = 2.3263d;
+
+	private final String name;
+	private final double mu;
+	private final double sigma;
+	private final boolean zero;
+
+	LatencyModel(String name, StubProperties.Latency latency) {
+		Duration median = latency.getMedian();
+		Duration p99 = latency.getP99();
+		if (median.isNegative() || p99.compareTo(median) < 0) {
+			throw new IllegalArgumentException("stub." + name + ".p99 must be at least stub." + name + ".median");
+		}
+		this.name = name;
+		this.zero = median.isZero();
+		this.mu = zero ? 0.0d : Math.log(median.toNanos());
+		this.sigma = zero ? 0.0d : Math.log((double) p99.toNanos() / median.toNanos()) / Z_99;
+	}
+
+	void pause() {
+		if (zero) {
+			return;
+		}
+		long nanos = (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+		try {
+			Thread.sleep(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while simulating " + name + " latency", ex);
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.implementation.crag_engine.stub;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.implementation.crag_engine.rag.RagController;
+
+// Closed-loop load generator for GET /ask: a fixed number of workers each send their next question as soon as the
+// previous answer arrives. Latencies are grouped by the X-Crag-Decision response header. Run it against an engine
+// that talks to the stub profile, e.g.
+//   mvn exec:java -Dexec.mainClass=com.implementation.crag_engine.stub.LoadDriver \
+//       -Dexec.args="--target=http://localhost:9090 --concurrency=16 --requests=2000"
+public final class LoadDriver {
+
+	private static final String[] TOPICS = { "retrieval augmented generation", "vector databases", "query rewriting",
+			"knowledge refinement", "web search fallback", "embedding models", "chunk overlap", "answer caching",
+			"relevance evaluation", "hallucination", "context windows", "approximate nearest neighbours" };
+	private static final String[] FORMS = { "What is %s?", "How does %s work?", "Why does %s matter for %s?",
+			"Compare %s and %s.", "Give an example of %s in practice." };
+
+	private final URI target;
+	private final int concurrency;
+	private final int requests;
+	private final int warmup;
+	private final int distinct;
+	private final HttpClient client;
+
+	private LoadDriver(Map<String, String> options) {
+		this.target = URI.create(options.getOrDefault("target", "http://localhost:9090"));
+		this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+		this.requests = Integer.parseInt(options.getOrDefault("requests", "1000"));
+		this.warmup = Integer.parseInt(options.getOrDefault("warmup", "50"));
+		// Zero makes every question unique, so no cache can answer it; a small number exercises the caches instead.
+		this.distinct = Integer.parseInt(options.getOrDefault("distinct", "0"));
+		if (concurrency <= 0 || requests <= 0 || warmup < 0 || distinct < 0) {
+			throw new IllegalArgumentException("concurrency and requests must be positive; warmup and distinct must "
+					+ "not be negative");
+		}
+		this.client = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(5))
+			.executor(Executors.newFixedThreadPool(concurrency))
+			.build();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Expected --name=value but got " + arg);
+			}
+			options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+		}
+		LoadDriver driver = new LoadDriver(options);
+		if (driver.warmup > 0) {
+			driver.run(driver.warmup, true);
+		}
+		driver.run(driver.requests, false).print();
+		System.exit(0);
+	}
+
+	private Report run(int count, boolean warmup) throws InterruptedException {
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+		List<Future<List<Sample>>> results = new ArrayList<>();
+		long started = System.nanoTime();
+		for (int worker = 0; worker < concurrency; worker++) {
+			results.add(workers.submit(() -> {
+				List<Sample> samples = new ArrayList<>();
+				for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+					samples.add(send(question(warmup ? -1 - i : i)));
+				}
+				return samples;
+			}));
+		}
+		List<Sample> samples = new ArrayList<>(count);
+		for (Future<List<Sample>> result : results) {
+			try {
+				samples.addAll(result.get());
+			}
+			catch (ExecutionException ex) {
+				throw new IllegalStateException("Load worker failed", ex.getCause());
+			}
+		}
+		workers.shutdown();
+		return new Report(samples, System.nanoTime() - started);
+	}
+
+	private Sample send(String question) {
+		URI uri = target.resolve("/ask?query=" + URLEncoder.encode(question, StandardCharsets.UTF_8));
+		HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofMinutes(5)).GET().build();
+		long started = System.nanoTime();
+		try {
+			HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+			long elapsed = System.nanoTime() - started;
+			String path = response.statusCode() == 200
+					? response.headers().firstValue(RagController.DECISION_HEADER).orElse("unknown")
+					: "status-" + response.statusCode();
+			return new Sample(path, elapsed);
+		}
+		catch (IOException ex) {
+			return new Sample("io-error", System.nanoTime() - started);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while sending load", ex);
+		}
+	}
+
+	// Warmup questions use negative indices, so unique questions never prime the caches for the measured run.
+	private String question(int index) {
+		int id = distinct > 0 ? Math.floorMod(index, distinct) : index;
+		int topic = Math.floorMod(id * 7, TOPICS.length);
+		String form = FORMS[Math.floorMod(id, FORMS.length)];
+		String question = form.formatted(TOPICS[topic], TOPICS[(topic + 5) % TOPICS.length]);
+		return question + " (#" + id + ")";
+	}
+
+	private record Sample(String path, long nanos) {
+	}
+
+	private record Report(List<Sample> samples, long elapsedNanos) {
+
+		void print() {
+			double seconds = elapsedNanos / 1e9d;
+			System.out.printf("%d requests in %.1f s: %.1f requests/s%n", samples.size(), seconds,
+					samples.size() / seconds);
+			Map<String, List<Long>> byPath = new TreeMap<>();
+			for (Sample sample : samples) {
+				byPath.computeIfAbsent(sample.path(), key -> new ArrayList<>()).add(sample.nanos());
+			}
+			byPath.put("all", samples.stream().map(Sample::nanos).toList());
+			System.out.printf("%-12s %8s %10s %10s %10s %10s%n", "path", "count", "p50 ms", "p95 ms", "p99 ms",
+					"max ms");
+			byPath.forEach((path, latencies) -> {
+				long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+				System.out.printf("%-12s %8d %10.1f %10.1f %10.1f %10.1f%n", path, sorted.length,
+						percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+						sorted[sorted.length - 1] / 1e6d);
+			});
+		}
+
+		// Nearest-rank percentile, in milliseconds.
+		private static double percentile(long[] sorted, double quantile) {
+			int rank = (int) Math.ceil(quantile * sorted.length);
+			return sorted[Math.max(0, rank - 1)] / 1e6d;
+		}
+
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.implementation.crag_engine.stub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+// Mimics the parts of the Ollama API the engine calls. Streaming replies are written on the request thread, so the
+// number of concurrent generations is bounded by the servlet container, as it would be by a real model server.
+@RestController
+@Profile("stub")
+@RequestMapping("/api")
+public class StubOllamaController {
+
+	private static final String NDJSON = "application/x-ndjson";
+
+	private final StubResponses responses;
+	private final ObjectMapper objectMapper;
+	private final LatencyModel generateLatency;
+	private final LatencyModel embeddingsLatency;
+	private final long tokenIntervalNanos;
+
+	public StubOllamaController(StubResponses responses, StubProperties properties, ObjectMapper objectMapper) {
+		if (properties.getTokenInterval().isNegative()) {
+			throw new IllegalArgumentException("stub.token-interval must not be negative");
+		}
+		this.responses = responses;
+		this.objectMapper = objectMapper;
+		this.generateLatency = new LatencyModel("generate", properties.getGenerate());
+		this.embeddingsLatency = new LatencyModel("embeddings", properties.getEmbeddings());
+		this.tokenIntervalNanos = properties.getTokenInterval().toNanos();
+	}
+
+	@PostMapping("/generate")
+	public void generate(@RequestBody GenerateRequest request, HttpServletResponse response) throws IOException {
+		String text = responses.generate(request.prompt() == null ? "" : request.prompt());
+		generateLatency.pause();
+		if (!request.stream()) {
+			response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+			objectMapper.writeValue(response.getOutputStream(), new GenerateChunk(request.model(), text, true));
+			return;
+		}
+		response.setContentType(NDJSON);
+		OutputStream output = response.getOutputStream();
+		String[] tokens = text.split("(?<= )");
+		for (int i = 0; i < tokens.length; i++) {
+			if (i > 0) {
+				sleep(tokenIntervalNanos);
+			}
+			writeLine(output, new GenerateChunk(request.model(), tokens[i], false));
+		}
+		writeLine(output, new GenerateChunk(request.model(), "", true));
+	}
+
+	@PostMapping("/embeddings")
+	public Map<String, double[]> embeddings(@RequestBody EmbeddingRequest request) {
+		embeddingsLatency.pause();
+		return Map.of("embedding", responses.embed(request.prompt() == null ? "" : request.prompt()));
+	}
+
+	@PostMapping("/embed")
+	public Map<String, List<double[]>> embed(@RequestBody BatchEmbeddingRequest request) {
+		embeddingsLatency.pause();
+		List<String> inputs = request.input() == null ? List.of() : request.input();
+		return Map.of("embeddings", inputs.stream().map(responses::embed).toList());
+	}
+
+	private void writeLine(OutputStream output, GenerateChunk chunk) throws IOException {
+		output.write(objectMapper.writeValueAsBytes(chunk));
+		output.write('\n');
+		output.flush();
+	}
+
+	private static void sleep(long nanos) {
+		if (nanos == 0) {
+			return;
+		}
+		try {
+			Thread.sleep(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while streaming stub tokens", ex);
+		}
+	}
+
+	public record GenerateRequest(String model, String prompt, boolean stream) {
+	}
+
+	public record EmbeddingRequest(String model, String prompt) {
+	}
+
+	public record BatchEmbeddingRequest(String model, List<String> input) {
+	}
+
+	public record GenerateChunk(String model, String response, boolean done) {
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.implementation.crag_engine.stub;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "stub")
+public class StubProperties {
+
+	private int embeddingDimension = 768;
+	private double correctShare = 0.5;
+	private double ambiguousShare = 0.3;
+	private Duration tokenInterval = Duration.ofMillis(20);
+	private final Latency generate = new Latency(Duration.ofMillis(400), Duration.ofSeconds(2));
+	private final Latency embeddings = new Latency(Duration.ofMillis(20), Duration.ofMillis(80));
+	private final Latency search = new Latency(Duration.ofMillis(150), Duration.ofMillis(600));
+
+	public int getEmbeddingDimension() {
+		return embeddingDimension;
+	}
+
+	public void setEmbeddingDimension(int embeddingDimension) {
+		this.embeddingDimension = embeddingDimension;
+	}
+
+	public double getCorrectShare() {
+		return correctShare;
+	}
+
+	public void setCorrectShare(double correctShare) {
+		this.correctShare = correctShare;
+	}
+
+	public double getAmbiguousShare() {
+		return ambiguousShare;
+	}
+
+	public void setAmbiguousShare(double ambiguousShare) {
+		this.ambiguousShare = ambiguousShare;
+	}
+
+	public Duration getTokenInterval() {
+		return tokenInterval;
+	}
+
+	public void setTokenInterval(Duration tokenInterval) {
+		this.tokenInterval = tokenInterval;
+	}
+
+	public Latency getGenerate() {
+		return generate;
+	}
+
+	public Latency getEmbeddings() {
+		return embeddings;
+	}
+
+	public Latency getSearch() {
+		return search;
+	}
+
+	// Latencies are drawn from a log-normal distribution fitted to the median and the 99th percentile.
+	public static class Latency {
+
+		private Duration median;
+		private Duration p99;
+
+		Latency(Duration median, Duration p99) {
+			this.median = median;
+			this.p99 = p99;
+		}
+
+		public Duration getMedian() {
+			return median;
+		}
+
+		public void setMedian(Duration median) {
+			this.median = median;
+		}
+
+		public Duration getP99() {
+			return p99;
+		}
+
+		public void setP99(Duration p99) {
+			this.p99 = p99;
+		}
+
+	}
+
+}
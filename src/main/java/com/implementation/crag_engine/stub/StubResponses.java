@@ -0,0 +1,171 @@
+package com.implementation.crag_engine.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+// Deterministic stand-ins for what the model would say. Each query is assigned a retrieval outcome by its hash, in the
+// configured proportions, so that a fixed query set always exercises the same CRAG decision paths.
+@Component
+@Profile("stub")
+public class StubResponses {
+
+	private static final Pattern QUERY_PATTERN = Pattern.compile("(?m)^(?:Query|Original query|Question):\\s*\\R(.*)$");
+	private static final Pattern NUMBERED_CHUNK_PATTERN = Pattern.compile("(?m)^\\[(\\d+)\\]$");
+	private static final Pattern NUMBERED_STRIP_PATTERN = Pattern.compile("(?m)^\\[(\\d+)\\] (.*)$");
+	private static final Pattern WORD_PATTERN = Pattern.compile("[\\p{L}\\p{N}]+");
+	private static final int BUCKETS = 10_000;
+	private static final int ANSWER_WORDS = 48;
+
+	private final StubProperties properties;
+
+	public StubResponses(StubProperties properties) {
+		double correct = properties.getCorrectShare();
+		double ambiguous = properties.getAmbiguousShare();
+		if (correct < 0.0d || ambiguous < 0.0d || correct + ambiguous > 1.0d) {
+			throw new IllegalArgumentException("stub.correct-share and stub.ambiguous-share must be non-negative and "
+					+ "add up to at most 1");
+		}
+		if (properties.getEmbeddingDimension() <= 0) {
+			throw new IllegalArgumentException("stub.embedding-dimension must be positive");
+		}
+		this.properties = properties;
+	}
+
+	public String generate(String prompt) {
+		String query = query(prompt);
+		if (prompt.startsWith("Score the relevance of the retrieved context chunk")) {
+			return "score: " + score(query);
+		}
+		if (prompt.startsWith("Score the relevance of each retrieved context chunk")) {
+			StringBuilder scores = new StringBuilder();
+			Matcher matcher = NUMBERED_CHUNK_PATTERN.matcher(prompt);
+			while (matcher.find()) {
+				scores.append('[').append(matcher.group(1)).append("] score: ").append(score(query)).append('\n');
+			}
+			return scores.toString();
+		}
+		if (prompt.startsWith("Determine whether the strip is compatible")) {
+			return isCompatible(prompt.substring(prompt.indexOf("Strip:"))) ? "true" : "false";
+		}
+		if (prompt.startsWith("Determine which strips are compatible")) {
+			List<String> selected = new ArrayList<>();
+			Matcher matcher = NUMBERED_STRIP_PATTERN.matcher(prompt);
+			while (matcher.find()) {
+				if (isCompatible(matcher.group(2))) {
+					selected.add(matcher.group(1));
+				}
+			}
+			return selected.isEmpty() ? "none" : String.join(", ", selected);
+		}
+		if (prompt.startsWith("Rewrite the user query")) {
+			return String.join(" ", words(query).stream().limit(6).toList());
+		}
+		return answer(query);
+	}
+
+	private Outcome outcome(String query) {
+		double bucket = (double) Math.floorMod(mix(query.hashCode()), BUCKETS) / BUCKETS;
+		if (bucket < properties.getCorrectShare()) {
+			return Outcome.CORRECT;
+		}
+		if (bucket < properties.getCorrectShare() + properties.getAmbiguousShare()) {
+			return Outcome.AMBIGUOUS;
+		}
+		return Outcome.INCORRECT;
+	}
+
+	// Feature hashing over lower-cased words, so that texts sharing words land close to each other.
+	public double[] embed(String text) {
+		double[] vector = new double[properties.getEmbeddingDimension()];
+		for (String word : words(text)) {
+			int hash = mix(word.hashCode());
+			vector[Math.floorMod(hash, vector.length)] += (hash & 0x80000000) == 0 ? 1.0d : -1.0d;
+		}
+		double norm = 0.0d;
+		for (double value : vector) {
+			norm += value * value;
+		}
+		if (norm == 0.0d) {
+			vector[0] = 1.0d;
+			return vector;
+		}
+		norm = Math.sqrt(norm);
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] /= norm;
+		}
+		return vector;
+	}
+
+	public List<SearchHit> search(String query, int limit) {
+		List<String> words = words(query);
+		String topic = words.isEmpty() ? "Stub" : words.get(0).substring(0, 1).toUpperCase(Locale.ROOT)
+				+ words.get(0).substring(1);
+		List<SearchHit> hits = new ArrayList<>(limit);
+		for (int i = 1; i <= limit; i++) {
+			hits.add(new SearchHit(topic + " (part " + i + ")", "An article about <span class=\"searchmatch\">"
+					+ String.join(" ", words) + "</span>. It covers the background, history and common uses of "
+					+ topic + ". Section " + i + " explains the details."));
+		}
+		return hits;
+	}
+
+	private String score(String query) {
+		return switch (outcome(query)) {
+			case CORRECT -> "0.9";
+			case AMBIGUOUS -> "0.5";
+			case INCORRECT -> "0.1";
+		};
+	}
+
+	// Roughly three strips in four are kept; the choice depends only on the strip's text.
+	private static boolean isCompatible(String strip) {
+		return Math.floorMod(mix(strip.hashCode()), 4) != 0;
+	}
+
+	private static String answer(String query) {
+		StringBuilder answer = new StringBuilder("Based on the provided context, the answer to \"").append(query)
+			.append("\" is as follows:");
+		List<String> words = words(query);
+		int hash = mix(query.hashCode());
+		for (int i = 0; i < ANSWER_WORDS; i++) {
+			answer.append(' ').append(words.isEmpty() ? "stub" : words.get(Math.floorMod(hash + i * 31, words.size())));
+		}
+		return answer.append('.').toString();
+	}
+
+	private static String query(String prompt) {
+		Matcher matcher = QUERY_PATTERN.matcher(prompt);
+		return matcher.find() ? matcher.group(1).trim() : "";
+	}
+
+	private static List<String> words(String text) {
+		List<String> words = new ArrayList<>();
+		Matcher matcher = WORD_PATTERN.matcher(text.toLowerCase(Locale.ROOT));
+		while (matcher.find()) {
+			words.add(matcher.group());
+		}
+		return words;
+	}
+
+	// String.hashCode is stable across JVMs but clusters similar strings; this spreads it over all bits.
+	private static int mix(int hash) {
+		int mixed = hash * 0x9E3779B1;
+		return mixed ^ (mixed >>> 16);
+	}
+
+	private enum Outcome {
+		CORRECT,
+		AMBIGUOUS,
+		INCORRECT
+	}
+
+	public record SearchHit(String title, String snippet) {
+	}
+
+}
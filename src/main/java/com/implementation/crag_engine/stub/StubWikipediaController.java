@@ -0,0 +1,38 @@
+package com.implementation.crag_engine.stub;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Mimics the MediaWiki search API that WebSearchService queries.
+@RestController
+@Profile("stub")
+public class StubWikipediaController {
+
+	private static final int MAX_LIMIT = 50;
+
+	private final StubResponses responses;
+	private final LatencyModel searchLatency;
+
+	public StubWikipediaController(StubResponses responses, StubProperties properties) {
+		this.responses = responses;
+		this.searchLatency = new LatencyModel("search", properties.getSearch());
+	}
+
+	@GetMapping("/w/api.php")
+	public SearchResponse search(@RequestParam("srsearch") String query,
+			@RequestParam(name = "srlimit", defaultValue = "10") int limit) {
+		searchLatency.pause();
+		return new SearchResponse(new SearchQuery(responses.search(query, Math.max(0, Math.min(limit, MAX_LIMIT)))));
+	}
+
+	public record SearchResponse(SearchQuery query) {
+	}
+
+	public record SearchQuery(List<StubResponses.SearchHit> search) {
+	}
+
+}